@@ -0,0 +1,365 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A species simulated as a layer of cells instead of as organisms. Which
+ * cells are occupied is kept as a bitset, one long per 64 columns of a
+ * row, and the age and food level of each cell as a byte, so a large
+ * population costs no objects at all.
+ *
+ * Each cell lives exactly as an organism of the species does: it ages
+ * and, if the species eats, gets hungry, and dies when it is too old or
+ * has no food left; it breeds with the species' breeding probability,
+ * placing up to the litter size of young in the free locations around
+ * it; and it then moves to a meal or to a free location, or dies from
+ * overcrowding if it can do neither. The free locations are found from
+ * the occupancy bitboards of the field, and the same random numbers are
+ * drawn as an organism would draw.
+ *
+ * The cells act in the order an organism list would hold them: those
+ * already living in the order they acted before, then those born since,
+ * in the order they were born. A sequential simulation with a layer
+ * therefore follows the same course as one with organisms. The order
+ * matters: a population whose old cells act first leaves room for its
+ * young ones, so acting in row order, for example, changes its course.
+ *
+ * The bitsets only say which cells are occupied; the species does not
+ * spread a word of 64 cells at a time. Each cell must draw its own random
+ * numbers, one cell after another, to follow the course of the organisms,
+ * so a step takes about as long as one with organisms. What the layer
+ * saves is the objects: the arrays cover the whole field, so the layer
+ * takes about two bytes per location whatever the population, and four
+ * more per living cell for the order.
+ *
+ * Cells may be removed, as when they are eaten, from the threads of a
+ * TiledStepEngine; everything else happens on one thread.
+ *
+ * @author David J. Barnes and Michael Kölling
+ * @version 2016.02.29
+ */
+public abstract class CellLayer implements SpeciesLayer
+{
+    // The largest age or food level a cell can hold.
+    private static final int MAX_STATE = 255;
+    // Updates a word of a bitset atomically.
+    private static final VarHandle WORD = MethodHandles.arrayElementVarHandle(long[].class);
+
+    // The field the species lives in.
+    private final Field field;
+    // The species simulated.
+    private final Species species;
+    // The width of the field.
+    private final int width;
+    // The number of words in each row of a bitset.
+    private final int wordsPerRow;
+    // Which cells are occupied, row by row.
+    private final long[] living;
+    // The cells living at the start of the step that have yet to act.
+    private final long[] acting;
+    // The age and food level of each cell, by cell index.
+    private final byte[] ages;
+    private final byte[] foodLevels;
+    // The cell indexes of the living cells in the order they act. A cell
+    // that has died may still be listed until the list is compacted, and
+    // one that has died and been born again is listed last where it was
+    // born.
+    private int[] order;
+    private int orderSize;
+    // The number of living cells.
+    private final AtomicInteger count;
+
+    /**
+     * Create an empty layer for a field.
+     * @param field The field.
+     * @param species The species simulated.
+     * @throws IllegalArgumentException If the species' maximum age or
+     *         food value is too large to be held in a byte.
+     */
+    public CellLayer(Field field, Species species)
+    {
+        if(species.getMaxAge() >= MAX_STATE || species.getFoodValue() > MAX_STATE) {
+            throw new IllegalArgumentException("Ages and food levels above " + MAX_STATE
+                                               + " cannot be held by a layer");
+        }
+        this.field = field;
+        this.species = species;
+        int depth = field.getDepth();
+        width = field.getWidth();
+        wordsPerRow = (width + Long.SIZE - 1) >> 6;
+        int words = Math.multiplyExact(depth, wordsPerRow);
+        living = new long[words];
+        acting = new long[words];
+        ages = new byte[Math.multiplyExact(depth, width)];
+        foodLevels = new byte[ages.length];
+        order = new int[16];
+        count = new AtomicInteger();
+    }
+
+    /**
+     * @return The code of the species the layer simulates.
+     */
+    public byte getSpeciesCode()
+    {
+        return species.getCode();
+    }
+
+    /**
+     * @return The number of living cells.
+     */
+    public int size()
+    {
+        return count.get();
+    }
+
+    /**
+     * Bring a cell to life, drawing its age and food level as a new
+     * organism would.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @param randomAge If true, the cell will have a random age.
+     */
+    public void create(int row, int col, boolean randomAge)
+    {
+        Random rand = Randomizer.getRandom();
+        int age = randomAge ? rand.nextInt(species.getMaxAge()) : 0;
+        int foodLevel = species.needsFood() ? rand.nextInt(species.getFoodValue()) : 0;
+        restore(row, col, age, foodLevel);
+    }
+
+    /**
+     * Bring a cell to life with a given age and food level. A cell that
+     * was not living acts after all the others.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @param age The age of the cell.
+     * @param foodLevel The food level of the cell.
+     * @throws IllegalArgumentException If the age or food level is out of range.
+     */
+    public void restore(int row, int col, int age, int foodLevel)
+    {
+        if(age < 0 || age > MAX_STATE || foodLevel < 0 || foodLevel > MAX_STATE) {
+            throw new IllegalArgumentException("Age " + age + " or food level " + foodLevel
+                                               + " is out of range");
+        }
+        int word = row * wordsPerRow + (col >> 6);
+        long bit = 1L << col;
+        int cell = row * width + col;
+        if((living[word] & bit) == 0) {
+            living[word] |= bit;
+            // A cell born during a step does not act until the next one.
+            acting[word] &= ~bit;
+            if(orderSize == order.length) {
+                order = Arrays.copyOf(order, orderSize * 2);
+            }
+            order[orderSize++] = cell;
+            count.incrementAndGet();
+        }
+        ages[cell] = (byte) age;
+        foodLevels[cell] = (byte) foodLevel;
+        field.placeCode(species.getCode(), row, col);
+    }
+
+    /**
+     * Remove a cell, as when it dies or is eaten, recording a death. This
+     * may be called from several threads at once, for different cells.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     */
+    public void remove(int row, int col)
+    {
+        int word = row * wordsPerRow + (col >> 6);
+        long bit = 1L << col;
+        // Neighbouring cells may share the word, so it is cleared atomically.
+        long before = (long) WORD.getAndBitwiseAnd(living, word, ~bit);
+        if((before & bit) != 0) {
+            WORD.getAndBitwiseAnd(acting, word, ~bit);
+            count.decrementAndGet();
+            field.clear(row, col);
+            field.getStats().recordDeath(species.getCode());
+        }
+    }
+
+    /**
+     * @return The age of the cell at the given location.
+     */
+    public int getAge(int row, int col)
+    {
+        return ages[row * width + col] & 0xFF;
+    }
+
+    /**
+     * @return The food level of the cell at the given location.
+     */
+    public int getFoodLevel(int row, int col)
+    {
+        return foodLevels[row * width + col] & 0xFF;
+    }
+
+    /**
+     * @return The cell indexes of the living cells, in the order in which
+     *         they act.
+     */
+    public int[] getCells()
+    {
+        compact();
+        return Arrays.copyOf(order, orderSize);
+    }
+
+    /**
+     * Run one step of the species: each cell living at the start of the
+     * step acts once, in order.
+     */
+    public void step()
+    {
+        Random rand = Randomizer.getRandom();
+        compact();
+        // Cells born during the step are added after these.
+        int acts = orderSize;
+        for(int n = 0; n < acts; n++) {
+            int cell = order[n];
+            int word = (cell / width) * wordsPerRow + ((cell % width) >> 6);
+            long bit = 1L << cell % width;
+            if((acting[word] & bit) != 0) {
+                acting[word] &= ~bit;
+                act(n, rand);
+            }
+        }
+    }
+
+    /**
+     * Remove every cell.
+     */
+    public void clear()
+    {
+        Arrays.fill(living, 0L);
+        Arrays.fill(acting, 0L);
+        orderSize = 0;
+        count.set(0);
+    }
+
+    /**
+     * Let the cell at a position in the order act as an organism does,
+     * moving its entry in the order with it.
+     * @param n The position of the cell in the order.
+     * @param rand The random generator.
+     */
+    private void act(int n, Random rand)
+    {
+        int cell = order[n];
+        int row = cell / width;
+        int col = cell % width;
+        int age = (ages[cell] & 0xFF) + 1;
+        int foodLevel = foodLevels[cell] & 0xFF;
+        if(species.needsFood()) {
+            foodLevel--;
+        }
+        if(age > species.getMaxAge() || (species.needsFood() && foodLevel <= 0)) {
+            remove(row, col);
+            return;
+        }
+        ages[cell] = (byte) age;
+        foodLevels[cell] = (byte) foodLevel;
+
+        // Breed into the free locations around the cell.
+        Neighbors free = field.freeAdjacentCells(row, col);
+        int births = 0;
+        if(age >= species.getBreedingAge()
+           && rand.nextDouble() <= species.getBreedingProbability()) {
+            births = rand.nextInt(species.getMaxLitterSize()) + 1;
+        }
+        for(int b = 0; b < births && b < free.size(); b++) {
+            create(free.getRow(b), free.getCol(b), species.newbornsHaveRandomAge());
+            field.getStats().recordBirth(species.getCode());
+        }
+
+        int destination = species.needsFood() ? findFood(row, col, rand) : -1;
+        if(destination < 0) {
+            destination = field.freeAdjacentCell(row, col);
+        }
+        if(destination < 0) {
+            // Overcrowding.
+            remove(row, col);
+        }
+        else {
+            move(cell, destination);
+            order[n] = destination;
+        }
+    }
+
+    /**
+     * Look for something the species eats next to a cell, as an organism
+     * does, and eat the first meal that succeeds, filling the cell's food
+     * level.
+     * @return The cell index of the meal, or -1 if nothing was eaten.
+     */
+    private int findFood(int row, int col, Random rand)
+    {
+        Neighbors adjacent = field.adjacentCells(row, col);
+        for(int n = 0; n < adjacent.size(); n++) {
+            int preyRow = adjacent.getRow(n);
+            int preyCol = adjacent.getCol(n);
+            byte prey = field.getSpeciesAt(preyRow, preyCol);
+            if(species.eats(prey)) {
+                Organism food = (Organism) field.getObjectAt(preyRow, preyCol);
+                double probability = species.getMealProbability(prey);
+                if((food == null || food.isAlive())
+                   && (probability >= 1.0 || rand.nextDouble() <= probability)) {
+                    if(food == null) {
+                        field.getLayer(prey).remove(preyRow, preyCol);
+                    }
+                    else {
+                        food.setDead();
+                    }
+                    foodLevels[row * width + col] = (byte) species.getFoodValue();
+                    return preyRow * width + preyCol;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Move a living cell, with its age and food level, to a free location.
+     */
+    private void move(int from, int to)
+    {
+        int fromRow = from / width;
+        int fromCol = from % width;
+        int toRow = to / width;
+        int toCol = to % width;
+        living[fromRow * wordsPerRow + (fromCol >> 6)] &= ~(1L << fromCol);
+        field.clear(fromRow, fromCol);
+        int word = toRow * wordsPerRow + (toCol >> 6);
+        living[word] |= 1L << toCol;
+        acting[word] &= ~(1L << toCol);
+        field.placeCode(species.getCode(), toRow, toCol);
+        ages[to] = ages[from];
+        foodLevels[to] = foodLevels[from];
+    }
+
+    /**
+     * Drop from the order the cells that have died, and the earlier
+     * entries of cells that died and were born again, keeping the order
+     * of the rest. Afterwards acting holds every living cell.
+     */
+    private void compact()
+    {
+        Arrays.fill(acting, 0L);
+        // Working back from the end, keep the last entry of each cell.
+        int kept = orderSize;
+        for(int n = orderSize - 1; n >= 0; n--) {
+            int cell = order[n];
+            int word = (cell / width) * wordsPerRow + ((cell % width) >> 6);
+            long bit = 1L << cell % width;
+            if((living[word] & bit) != 0 && (acting[word] & bit) == 0) {
+                acting[word] |= bit;
+                order[--kept] = cell;
+            }
+        }
+        orderSize -= kept;
+        System.arraycopy(order, kept, order, 0, orderSize);
+    }
+}
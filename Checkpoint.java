@@ -0,0 +1,280 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * A saved state of a simulation, from which it can be resumed exactly.
+ * Checkpoints are written and read through a memory-mapped file, so
+ * that even a very large field is saved with a few bulk copies.
+ *
+ * The file holds, in order:
+ *   a header: magic number, format version, depth, width, step, and
+ *   the seed and state of the simulation's random generator;
+ *   the parameters of the simulation, as the length of their text
+ *   followed by the text in UTF-8;
+ *   the species code of every location, one byte each, in row order;
+ *   for each species code, the number of its living organisms followed
+ *   by the location index, age and food level of each, in list order.
+ *
+ * Organisms are saved in the order of their lists because that is the
+ * order in which they act, so a resumed simulation follows the same
+ * course as one that was never stopped.
+ *
+ * The cells of a species simulated by a SpeciesLayer are saved as
+ * organisms, in the order in which they act. Either kind of record can
+ * be restored into either kind of simulation.
+ *
+ * @author David J. Barnes and Michael Kölling
+ * @version 2016.02.29
+ */
+public class Checkpoint
+{
+    // Identifies a checkpoint file ("ECOS").
+    private static final int MAGIC = 0x45434F53;
+    // The version of the file format.
+    private static final int VERSION = 3;
+    // The size of the header, in bytes.
+    private static final int HEADER_SIZE = 5 * Integer.BYTES + 2 * Long.BYTES;
+    // The size of one organism's record, in bytes.
+    private static final int RECORD_SIZE = 3 * Integer.BYTES;
+
+    // The mapped contents of the file.
+    private final ByteBuffer buffer;
+    // The size of the saved field.
+    private final int depth, width;
+    // The step at which the simulation was saved.
+    private final int step;
+    // The seed of the random generator.
+    private final long seed;
+    // The state of the random generator when it was saved.
+    private final long randomState;
+    // The parameters of the simulation.
+    private final Parameters parameters;
+    // The position of the species codes in the file.
+    private final int codesStart;
+
+    /**
+     * Read the header of a mapped checkpoint.
+     * @param buffer The contents of the file.
+     * @throws IOException If the contents are not a checkpoint.
+     */
+    private Checkpoint(ByteBuffer buffer) throws IOException
+    {
+        this.buffer = buffer;
+        if(buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a checkpoint file");
+        }
+        int version = buffer.getInt();
+        if(version != VERSION) {
+            throw new IOException("Unsupported checkpoint version " + version);
+        }
+        depth = buffer.getInt();
+        width = buffer.getInt();
+        step = buffer.getInt();
+        seed = buffer.getLong();
+        randomState = buffer.getLong();
+        try {
+            byte[] text = new byte[buffer.getInt()];
+            buffer.get(text);
+            parameters = Parameters.parse(new String(text, StandardCharsets.UTF_8));
+        }
+        catch(RuntimeException e) {
+            throw new IOException("Damaged checkpoint parameters", e);
+        }
+        codesStart = buffer.position();
+    }
+
+    /**
+     * Save the state of a simulation.
+     * @param file The file to write, replacing any existing file.
+     * @param step The current step.
+     * @param seed The seed of the simulation's random generator.
+     * @param parameters The parameters of the simulation.
+     * @param field The field.
+     * @param populations The organisms of each species, indexed by
+     *                    species code; null for codes with no species.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void save(Path file, int step, long seed, Parameters parameters,
+                            Field field, List<List<Organism>> populations)
+        throws IOException
+    {
+        int[] living = new int[Species.COUNT];
+        byte[] text = parameters.toString().getBytes(StandardCharsets.UTF_8);
+        long size = HEADER_SIZE + Integer.BYTES + text.length
+                    + (long) field.getDepth() * field.getWidth()
+                    + (long) Species.COUNT * Integer.BYTES;
+        for(int code = 0; code < Species.COUNT; code++) {
+            List<Organism> population = populations.get(code);
+            if(field.getLayer(code) != null) {
+                living[code] = field.getLayer(code).size();
+                size += (long) living[code] * RECORD_SIZE;
+            }
+            else if(population != null) {
+                for(Organism organism : population) {
+                    if(organism.isAlive()) {
+                        living[code]++;
+                    }
+                }
+                size += (long) living[code] * RECORD_SIZE;
+            }
+        }
+        if(size > Integer.MAX_VALUE) {
+            throw new IOException("Checkpoint of " + size + " bytes is too large to map");
+        }
+
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                                                   StandardOpenOption.READ,
+                                                   StandardOpenOption.WRITE,
+                                                   StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putInt(field.getDepth());
+            buffer.putInt(field.getWidth());
+            buffer.putInt(step);
+            buffer.putLong(seed);
+            buffer.putLong(Randomizer.getState());
+            buffer.putInt(text.length);
+            buffer.put(text);
+            field.copyCodes(buffer);
+            int width = field.getWidth();
+            for(int code = 0; code < Species.COUNT; code++) {
+                buffer.putInt(living[code]);
+                SpeciesLayer layer = field.getLayer(code);
+                if(layer != null) {
+                    for(int cell : layer.getCells()) {
+                        buffer.putInt(cell);
+                        buffer.putInt(layer.getAge(cell / width, cell % width));
+                        buffer.putInt(layer.getFoodLevel(cell / width, cell % width));
+                    }
+                }
+                else if(living[code] > 0) {
+                    for(Organism organism : populations.get(code)) {
+                        if(organism.isAlive()) {
+                            Location location = organism.getLocation();
+                            buffer.putInt(location.getRow() * width + location.getCol());
+                            buffer.putInt(organism.getAge());
+                            buffer.putInt(organism.getFoodLevel());
+                        }
+                    }
+                }
+            }
+            buffer.force();
+        }
+    }
+
+    /**
+     * Open a checkpoint and read its header.
+     * @param file The checkpoint file.
+     * @return The checkpoint.
+     * @throws IOException If the file cannot be read or is not a checkpoint.
+     */
+    public static Checkpoint open(Path file) throws IOException
+    {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if(size > Integer.MAX_VALUE) {
+                throw new IOException("Checkpoint of " + size + " bytes is too large to map");
+            }
+            // The mapping remains valid after the channel is closed.
+            return new Checkpoint(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    /**
+     * @return The depth of the saved field.
+     */
+    public int getDepth()
+    {
+        return depth;
+    }
+
+    /**
+     * @return The width of the saved field.
+     */
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * @return The step at which the simulation was saved.
+     */
+    public int getStep()
+    {
+        return step;
+    }
+
+    /**
+     * @return The seed of the saved simulation's random generator.
+     */
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    /**
+     * @return The parameters of the saved simulation.
+     */
+    public Parameters getParameters()
+    {
+        return parameters;
+    }
+
+    /**
+     * Put the saved organisms back into an empty field and their lists,
+     * or into the layers of the field for species simulated by a layer,
+     * and restore the random generator returned by Randomizer.getRandom.
+     * @param field An empty field of the saved size.
+     * @param populations Empty lists for the organisms of each species,
+     *                    indexed by species code.
+     * @param parameters The parameters of the resumed simulation. They
+     *                   should be those it was saved with.
+     * @throws IOException If the checkpoint is damaged.
+     */
+    public void restore(Field field, List<List<Organism>> populations, Parameters parameters)
+        throws IOException
+    {
+        ByteBuffer records = buffer.duplicate();
+        int cells = depth * width;
+        records.position(codesStart + cells);
+        OrganismPool pool = field.getPool();
+        try {
+            for(int code = 0; code < Species.COUNT; code++) {
+                int count = records.getInt();
+                if(count > 0 && populations.get(code) == null) {
+                    throw new IOException("Checkpoint holds an unknown species " + code);
+                }
+                Species species = parameters.getSpecies(code);
+                SpeciesLayer layer = field.getLayer(code);
+                for(int n = 0; n < count; n++) {
+                    int index = records.getInt();
+                    int age = records.getInt();
+                    int foodLevel = records.getInt();
+                    if(index < 0 || index >= cells || buffer.get(codesStart + index) != code) {
+                        throw new IOException("Damaged checkpoint at location " + index);
+                    }
+                    if(layer != null) {
+                        layer.restore(index / width, index % width, age, foodLevel);
+                        continue;
+                    }
+                    Location location = new Location(index / width, index % width);
+                    Organism organism = pool.acquire(species, false, field, location);
+                    organism.restore(age, foodLevel);
+                    populations.get(code).add(organism);
+                }
+            }
+        }
+        catch(RuntimeException e) {
+            throw new IOException("Damaged checkpoint", e);
+        }
+        // Creating the organisms drew random numbers, so this comes last.
+        Randomizer.setState(randomState);
+    }
+}
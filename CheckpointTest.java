@@ -0,0 +1,153 @@
+
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The test class CheckpointTest. A simulation resumed from a checkpoint
+ * must go on exactly as one that was never stopped.
+ *
+ * @author David J. Barnes and Michael Kölling
+ * @version 2016.02.29
+ */
+public class CheckpointTest
+{
+    // The size of the field.
+    private static final int DEPTH = 120;
+    private static final int WIDTH = 100;
+    // The steps run before and after the checkpoint.
+    private static final int STEPS_BEFORE = 8;
+    private static final int STEPS_AFTER = 12;
+
+    private Path file;
+
+    /**
+     * Default constructor for test class CheckpointTest
+     */
+    public CheckpointTest()
+    {
+    }
+
+    /**
+     * Sets up the test fixture.
+     *
+     * Called before every test case method.
+     */
+    @BeforeEach
+    public void setUp() throws IOException
+    {
+        file = Files.createTempFile("checkpoint", ".bin");
+    }
+
+    /**
+     * Tears down the test fixture.
+     *
+     * Called after every test case method.
+     */
+    @AfterEach
+    public void tearDown() throws IOException
+    {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void testSequentialResume() throws IOException
+    {
+        assertResumeMatches(new Simulator(DEPTH, WIDTH, true, 31), 1);
+    }
+
+    @Test
+    public void testTiledResume() throws IOException
+    {
+        Simulator simulator = new Simulator(DEPTH, WIDTH, true, 32);
+        simulator.setThreads(4);
+        assertResumeMatches(simulator, 4);
+    }
+
+    @Test
+    public void testResumeWithLayers() throws IOException
+    {
+        Simulator simulator = new Simulator(DEPTH, WIDTH, true, 33);
+        simulator.setFireLayer(true);
+        simulator.setGrassLayer(true);
+        assertResumeMatches(simulator, 1);
+    }
+
+    @Test
+    public void testResumeWithParameters() throws IOException
+    {
+        Parameters parameters = Parameters.defaults().with("deer.maxAge", "90")
+                                                     .with("fire.breedingProbability", "0.3");
+        Simulator simulator = new Simulator(DEPTH, WIDTH, true, 34, parameters);
+        simulator.simulate(STEPS_BEFORE);
+        simulator.saveCheckpoint(file);
+        Simulator resumed = Simulator.fromCheckpoint(file, true);
+        assertEquals(parameters, resumed.getParameters());
+        assertEquals(34, resumed.getSeed());
+        Simulator defaults = new Simulator(DEPTH, WIDTH, true, 34);
+        assertThrows(IOException.class, () -> defaults.resume(file));
+    }
+
+    @Test
+    public void testResumeIntoFieldOfOtherSize() throws IOException
+    {
+        new Simulator(DEPTH, WIDTH, true, 35).saveCheckpoint(file);
+        Simulator other = new Simulator(DEPTH, WIDTH + 1, true, 35);
+        assertThrows(IOException.class, () -> other.resume(file));
+    }
+
+    @Test
+    public void testNotACheckpoint() throws IOException
+    {
+        Files.write(file, new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+        assertThrows(IOException.class, () -> Checkpoint.open(file));
+    }
+
+    /**
+     * Run a simulation, save it, and check that both resuming it in place
+     * and creating a simulation from the checkpoint lead to the same field
+     * as running it on.
+     * @param simulator The simulation, not yet run.
+     * @param threads The number of threads to resume on.
+     */
+    private void assertResumeMatches(Simulator simulator, int threads) throws IOException
+    {
+        simulator.simulate(STEPS_BEFORE);
+        simulator.saveCheckpoint(file);
+        simulator.simulate(STEPS_AFTER);
+        byte[] expected = codesOf(simulator);
+        String details = simulator.getStats().getPopulationDetails();
+
+        simulator.resume(file);
+        assertEquals(STEPS_BEFORE, simulator.getStep());
+        simulator.simulate(STEPS_AFTER);
+        assertArrayEquals(expected, codesOf(simulator), "Field after resuming in place");
+
+        Simulator resumed = Simulator.fromCheckpoint(file, true);
+        resumed.setFireLayer(simulator.getField().getLayer(Species.FIRE) != null);
+        resumed.setGrassLayer(simulator.getField().getLayer(Species.GRASS) != null);
+        resumed.setThreads(threads);
+        resumed.simulate(STEPS_AFTER);
+        assertEquals(STEPS_BEFORE + STEPS_AFTER, resumed.getStep());
+        assertArrayEquals(expected, codesOf(resumed), "Field after resuming from the file");
+        assertEquals(details, resumed.getStats().getPopulationDetails());
+        simulator.setThreads(1);
+        resumed.setThreads(1);
+    }
+
+    /**
+     * @return The species code of every location of a simulation's field.
+     */
+    private byte[] codesOf(Simulator simulator)
+    {
+        byte[] codes = new byte[DEPTH * WIDTH];
+        simulator.getField().copyCodes(ByteBuffer.wrap(codes));
+        return codes;
+    }
+}
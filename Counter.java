@@ -50,6 +50,23 @@ public class Counter
     { 
         count++; 
     } 
+
+    /**
+     * Decrement the current count by one.
+     */
+    public void decrement()
+    {
+        count--;
+    }
+
+    /**
+     * Change the current count by the given amount.
+     * @param amount The amount to add, which may be negative.
+     */
+    public void add(int amount)
+    {
+        count += amount;
+    }
      
     /** 
      * Reset the current count to zero. 
@@ -0,0 +1,135 @@
+import java.util.Random;
+
+/**
+ * A counter-based random generator. The n-th value of a stream is a pure
+ * function of the stream's key and of n, computed with the SplitMix64
+ * mixing function, so a stream can be recreated at any time from its key
+ * alone. Keys are built from a seed, a step, a phase and an entity (such
+ * as a location), which makes the values an entity draws independent of
+ * the order in which entities act and of the thread they act on.
+ *
+ * Values are generated a block at a time into a small buffer, and an
+ * instance can be rekeyed without allocation, so each thread can keep one
+ * instance and reuse it for every entity.
+ *
+ * @author David J. Barnes and Michael Kölling
+ * @version 2016.02.29
+ */
+public class CounterRandom extends Random
+{
+    // The version of the serialized form.
+    private static final long serialVersionUID = 1L;
+    // The SplitMix64 increment, used to spread keys and counters.
+    private static final long GAMMA = 0x9E3779B97F4A7C15L;
+    // How many values are generated at a time.
+    private static final int BLOCK_SIZE = 8;
+
+    // The key of the current stream.
+    private long key;
+    // The number of values generated so far in the current stream.
+    private long counter;
+    // The current block of values, and the position of the next one to use.
+    private long[] block;
+    private int position;
+
+    /**
+     * Create a generator for the stream with key 0.
+     */
+    public CounterRandom()
+    {
+        super(0);
+        block = new long[BLOCK_SIZE];
+        setSeed(0);
+    }
+
+    /**
+     * Switch to the stream of the given entity.
+     * @param seed The simulation seed.
+     * @param step The step being run.
+     * @param phase The phase of the step.
+     * @param entity The entity, such as a location index.
+     * @return This generator.
+     */
+    public CounterRandom rekey(long seed, long step, long phase, long entity)
+    {
+        long streamKey = mix(seed + GAMMA);
+        streamKey = mix(streamKey + step * GAMMA);
+        streamKey = mix(streamKey + phase * GAMMA);
+        streamKey = mix(streamKey + entity * GAMMA);
+        start(streamKey);
+        return this;
+    }
+
+    /**
+     * Switch to the stream with the given seed as its key.
+     * @param seed The new key.
+     */
+    public void setSeed(long seed)
+    {
+        // Also called by the Random constructor, before block exists.
+        start(mix(seed));
+    }
+
+    /**
+     * @return The next 64 random bits of the stream.
+     */
+    public long nextLong()
+    {
+        if(position == BLOCK_SIZE) {
+            fillBlock();
+        }
+        return block[position++];
+    }
+
+    /**
+     * @return The next random double, uniform in [0, 1).
+     */
+    public double nextDouble()
+    {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * Supply random bits to the other methods inherited from Random.
+     * @param bits The number of bits wanted.
+     * @return That many random bits.
+     */
+    protected int next(int bits)
+    {
+        return (int) (nextLong() >>> (64 - bits));
+    }
+
+    /**
+     * Start the stream with the given key from its first value.
+     */
+    private void start(long streamKey)
+    {
+        key = streamKey;
+        counter = 0;
+        position = BLOCK_SIZE;
+    }
+
+    /**
+     * Generate the next block of values of the stream.
+     */
+    private void fillBlock()
+    {
+        long base = key + counter * GAMMA;
+        for(int i = 0; i < BLOCK_SIZE; i++) {
+            block[i] = mix(base + (i + 1) * GAMMA);
+        }
+        counter += BLOCK_SIZE;
+        position = 0;
+    }
+
+    /**
+     * The SplitMix64 finalizer: a bijection on 64-bit values that
+     * spreads every input bit across the whole output.
+     */
+    private static long mix(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,145 @@
+
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The test class CounterRandomTest. The values drawn from a stream must
+ * depend only on its key, whatever the thread drawing them and whatever
+ * was drawn before.
+ *
+ * @author David J. Barnes and Michael Kölling
+ * @version 2016.02.29
+ */
+public class CounterRandomTest
+{
+    // The key of the streams drawn from, apart from the entity.
+    private static final long SEED = 77;
+    private static final long STEP = 12;
+    private static final long PHASE = 3;
+    // The number of entities, and of values drawn for each.
+    private static final int ENTITIES = 5000;
+    private static final int DRAWS = 20;
+
+    private long[][] expected;
+
+    /**
+     * Default constructor for test class CounterRandomTest
+     */
+    public CounterRandomTest()
+    {
+    }
+
+    /**
+     * Sets up the test fixture.
+     *
+     * Called before every test case method.
+     */
+    @BeforeEach
+    public void setUp()
+    {
+        expected = new long[ENTITIES][];
+        CounterRandom random = new CounterRandom();
+        for(int entity = 0; entity < ENTITIES; entity++) {
+            expected[entity] = draw(random, entity);
+        }
+    }
+
+    /**
+     * Tears down the test fixture.
+     *
+     * Called after every test case method.
+     */
+    @AfterEach
+    public void tearDown()
+    {
+    }
+
+    @Test
+    public void testSameDrawsInAnyOrder()
+    {
+        CounterRandom random = new CounterRandom();
+        for(int entity = ENTITIES - 1; entity >= 0; entity--) {
+            assertArrayEquals(expected[entity], draw(random, entity), "Entity " + entity);
+        }
+    }
+
+    @Test
+    public void testSameDrawsOnAnyNumberOfThreads() throws InterruptedException
+    {
+        for(int threads : new int[] {2, 3, 8}) {
+            long[][] drawn = new long[ENTITIES][];
+            CounterRandom[] streams = new CounterRandom[threads];
+            List<Thread> workers = new ArrayList<>();
+            for(int t = 0; t < threads; t++) {
+                int first = t;
+                Thread worker = new Thread(() -> {
+                    CounterRandom random = Randomizer.getStream();
+                    streams[first] = random;
+                    // Each thread takes every threads-th entity.
+                    for(int entity = first; entity < ENTITIES; entity += threads) {
+                        drawn[entity] = draw(random, entity);
+                    }
+                });
+                workers.add(worker);
+                worker.start();
+            }
+            for(Thread worker : workers) {
+                worker.join();
+            }
+            for(int t = 1; t < threads; t++) {
+                assertNotSame(streams[0], streams[t], "Each thread has a stream of its own");
+            }
+            for(int entity = 0; entity < ENTITIES; entity++) {
+                assertArrayEquals(expected[entity], drawn[entity],
+                                  "Entity " + entity + " on " + threads + " threads");
+            }
+        }
+    }
+
+    @Test
+    public void testRekeyRestartsStream()
+    {
+        CounterRandom random = new CounterRandom();
+        random.rekey(SEED, STEP, PHASE, 1);
+        long first = random.nextLong();
+        for(int n = 0; n < 100; n++) {
+            random.nextInt(10);
+        }
+        random.rekey(SEED, STEP, PHASE, 1);
+        assertEquals(first, random.nextLong());
+    }
+
+    @Test
+    public void testKeysGiveDifferentStreams()
+    {
+        CounterRandom random = new CounterRandom();
+        long value = random.rekey(SEED, STEP, PHASE, 1).nextLong();
+        assertNotEquals(value, random.rekey(SEED, STEP, PHASE, 2).nextLong());
+        assertNotEquals(value, random.rekey(SEED, STEP, PHASE + 1, 1).nextLong());
+        assertNotEquals(value, random.rekey(SEED, STEP + 1, PHASE, 1).nextLong());
+        assertNotEquals(value, random.rekey(SEED + 1, STEP, PHASE, 1).nextLong());
+    }
+
+    /**
+     * Rekey a generator for an entity and draw values of every kind the
+     * organisms use from it.
+     * @return The values drawn, as longs.
+     */
+    private long[] draw(CounterRandom random, int entity)
+    {
+        random.rekey(SEED, STEP, PHASE, entity);
+        long[] values = new long[DRAWS];
+        for(int n = 0; n < DRAWS; n += 4) {
+            values[n] = random.nextInt(8);
+            values[n + 1] = Double.doubleToLongBits(random.nextDouble());
+            values[n + 2] = random.nextLong();
+            values[n + 3] = random.nextBoolean() ? 1 : 0;
+        }
+        return values;
+    }
+}
@@ -0,0 +1,433 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs many independent simulations of the same scenario, each with a
+ * seed of its own, on a fixed number of threads, and gathers statistics
+ * across them: the mean and quantiles of each species' final count, and
+ * how many runs each species died out in and when.
+ *
+ * Runs are given consecutive seeds, so an ensemble is reproducible, and
+ * each run gives the same result as a single Simulator with its seed.
+ * The results are passed to a Listener as each run finishes, together
+ * with the summary of all the runs finished so far.
+ *
+ * @author David J. Barnes and Michael Kölling
+ * @version 2016.02.29
+ */
+public class Ensemble
+{
+    // The size of each run's field.
+    private final int depth, width;
+    // The most steps each run is simulated for.
+    private final int steps;
+    // The figures governing every run.
+    private final Parameters parameters;
+
+    /**
+     * Describe an ensemble of simulations with the default parameters.
+     * @param depth The depth of each run's field.
+     * @param width The width of each run's field.
+     * @param steps The most steps to simulate each run for; a run stops
+     *              early once it is no longer viable.
+     */
+    public Ensemble(int depth, int width, int steps)
+    {
+        this(depth, width, steps, Parameters.defaults());
+    }
+
+    /**
+     * Describe an ensemble of simulations.
+     * @param depth The depth of each run's field.
+     * @param width The width of each run's field.
+     * @param steps The most steps to simulate each run for; a run stops
+     *              early once it is no longer viable.
+     * @param parameters The figures governing every run.
+     */
+    public Ensemble(int depth, int width, int steps, Parameters parameters)
+    {
+        this.depth = depth;
+        this.width = width;
+        this.steps = steps;
+        this.parameters = parameters;
+    }
+
+    /**
+     * Run an ensemble from the command line and print its summary.
+     * Usage: java Ensemble runs [steps [depth width [threads [firstSeed]]]]
+     * @param args The number of runs, and optionally the steps, field size,
+     *             number of threads and the seed of the first run.
+     */
+    public static void main(String[] args) throws InterruptedException
+    {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int steps = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        int depth = args.length > 3 ? Integer.parseInt(args[2]) : 100;
+        int width = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+        int threads = args.length > 4 ? Integer.parseInt(args[4])
+                      : Runtime.getRuntime().availableProcessors();
+        long firstSeed = args.length > 5 ? Long.parseLong(args[5]) : Randomizer.getSeed();
+        Summary summary = new Ensemble(depth, width, steps).run(firstSeed, runs, threads, null);
+        System.out.print(summary.getDetails());
+    }
+
+    /**
+     * Run the ensemble, waiting until every run has finished.
+     * @param firstSeed The seed of the first run; run n has seed firstSeed + n.
+     * @param runs The number of runs.
+     * @param threads The number of runs simulated at once.
+     * @param listener Told about each run as it finishes, on this thread; may be null.
+     * @return The summary of all the runs.
+     * @throws InterruptedException If this thread is interrupted; the
+     *                              runs still going are abandoned.
+     */
+    public Summary run(long firstSeed, int runs, int threads, Listener listener)
+        throws InterruptedException
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CompletionService<Result> completed = new ExecutorCompletionService<>(executor);
+            for(int n = 0; n < runs; n++) {
+                long seed = firstSeed + n;
+                completed.submit(() -> runOne(seed));
+            }
+            Summary summary = new Summary(runs);
+            for(int n = 0; n < runs; n++) {
+                Result result;
+                try {
+                    result = completed.take().get();
+                }
+                catch(ExecutionException e) {
+                    throw new IllegalStateException("A run of the ensemble failed", e.getCause());
+                }
+                summary.add(result);
+                if(listener != null) {
+                    listener.runFinished(result, summary);
+                }
+            }
+            return summary;
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Run the ensemble on this thread, one run after another, as when
+     * the ensemble is itself one of many run in parallel.
+     * @param firstSeed The seed of the first run; run n has seed firstSeed + n.
+     * @param runs The number of runs.
+     * @return The summary of all the runs.
+     */
+    public Summary run(long firstSeed, int runs)
+    {
+        Summary summary = new Summary(runs);
+        for(int n = 0; n < runs; n++) {
+            summary.add(runOne(firstSeed + n));
+        }
+        return summary;
+    }
+
+    /**
+     * Simulate a single run.
+     * @param seed The run's seed.
+     * @return Its result.
+     */
+    public Result runOne(long seed)
+    {
+        Simulator simulator = new Simulator(depth, width, true, seed, parameters);
+        Result result = new Result(seed);
+        FieldStats stats = simulator.getStats();
+        for(int code = 0; code < Species.COUNT; code++) {
+            if(stats.getCount(code) > 0) {
+                result.extinctionSteps[code] = Result.NOT_EXTINCT;
+            }
+        }
+        simulator.addObserver((step, field, fieldStats) -> result.record(step, fieldStats));
+        simulator.simulate(steps);
+        result.steps = simulator.getStep();
+        for(int code = 0; code < Species.COUNT; code++) {
+            result.finalCounts[code] = stats.getCount(code);
+        }
+        return result;
+    }
+
+    /**
+     * Told about each run of an ensemble as it finishes.
+     */
+    public interface Listener
+    {
+        /**
+         * Report a finished run.
+         * @param result The run's result.
+         * @param summary The summary of the runs finished so far,
+         *                including this one.
+         */
+        void runFinished(Result result, Summary summary);
+    }
+
+    /**
+     * The outcome of one run.
+     */
+    public static class Result
+    {
+        // Marks a species that was present at the start and never died out.
+        public static final int NOT_EXTINCT = -1;
+        // Marks a species that was absent from the start.
+        public static final int ABSENT = -2;
+
+        private final long seed;
+        private int steps;
+        private final int[] finalCounts;
+        // The step at which each species died out, by species code.
+        private final int[] extinctionSteps;
+
+        /**
+         * Create the result of a run that has not yet started.
+         */
+        Result(long seed)
+        {
+            this.seed = seed;
+            finalCounts = new int[Species.COUNT];
+            extinctionSteps = new int[Species.COUNT];
+            Arrays.fill(extinctionSteps, ABSENT);
+        }
+
+        /**
+         * Note any species that died out in a step.
+         */
+        void record(int step, FieldStats stats)
+        {
+            for(int code = 0; code < Species.COUNT; code++) {
+                if(extinctionSteps[code] == NOT_EXTINCT && stats.getCount(code) == 0) {
+                    extinctionSteps[code] = step;
+                }
+            }
+        }
+
+        /**
+         * @return The run's seed.
+         */
+        public long getSeed()
+        {
+            return seed;
+        }
+
+        /**
+         * @return The number of steps simulated.
+         */
+        public int getSteps()
+        {
+            return steps;
+        }
+
+        /**
+         * @return The number of organisms of a species at the end of the run.
+         */
+        public int getFinalCount(int speciesCode)
+        {
+            return finalCounts[speciesCode];
+        }
+
+        /**
+         * @return The step at which a species died out, NOT_EXTINCT if it
+         *         survived, or ABSENT if it was not there at the start.
+         */
+        public int getExtinctionStep(int speciesCode)
+        {
+            return extinctionSteps[speciesCode];
+        }
+    }
+
+    /**
+     * Statistics across the finished runs of an ensemble.
+     */
+    public static class Summary
+    {
+        // The number of runs in the whole ensemble.
+        private final int expectedRuns;
+        private int runs;
+        // The final counts of each species, by species code then run.
+        private final int[][] finalCounts;
+        // For each species, the number of runs it died out in, and the
+        // total of the steps at which it did.
+        private final int[] extinctions;
+        private final long[] extinctionStepTotals;
+
+        /**
+         * Create an empty summary.
+         * @param expectedRuns The number of runs in the ensemble.
+         */
+        Summary(int expectedRuns)
+        {
+            this.expectedRuns = expectedRuns;
+            finalCounts = new int[Species.COUNT][expectedRuns];
+            extinctions = new int[Species.COUNT];
+            extinctionStepTotals = new long[Species.COUNT];
+        }
+
+        /**
+         * Add the result of a run.
+         */
+        void add(Result result)
+        {
+            for(int code = 0; code < Species.COUNT; code++) {
+                finalCounts[code][runs] = result.getFinalCount(code);
+                int step = result.getExtinctionStep(code);
+                if(step >= 0) {
+                    extinctions[code]++;
+                    extinctionStepTotals[code] += step;
+                }
+            }
+            runs++;
+        }
+
+        /**
+         * @return The summary as properties, from which fromProperties
+         *         can make an equal summary.
+         */
+        Properties toProperties()
+        {
+            Properties properties = new Properties();
+            properties.setProperty("expectedRuns", String.valueOf(expectedRuns));
+            properties.setProperty("runs", String.valueOf(runs));
+            for(int code = 0; code < Species.COUNT; code++) {
+                StringBuilder counts = new StringBuilder();
+                for(int run = 0; run < runs; run++) {
+                    counts.append(run == 0 ? "" : ",").append(finalCounts[code][run]);
+                }
+                properties.setProperty("finalCounts." + code, counts.toString());
+                properties.setProperty("extinctions." + code, String.valueOf(extinctions[code]));
+                properties.setProperty("extinctionStepTotal." + code,
+                                       String.valueOf(extinctionStepTotals[code]));
+            }
+            return properties;
+        }
+
+        /**
+         * Make a summary from properties written by toProperties.
+         * @param properties The properties.
+         * @return The summary.
+         * @throws IllegalArgumentException If the properties are incomplete
+         *                                  or not numbers.
+         */
+        static Summary fromProperties(Properties properties)
+        {
+            try {
+                Summary summary = new Summary(Integer.parseInt(
+                    properties.getProperty("expectedRuns")));
+                summary.runs = Integer.parseInt(properties.getProperty("runs"));
+                for(int code = 0; code < Species.COUNT; code++) {
+                    String counts = properties.getProperty("finalCounts." + code);
+                    String[] values = counts.isEmpty() ? new String[0] : counts.split(",");
+                    if(values.length != summary.runs) {
+                        throw new IllegalArgumentException("Wrong number of final counts");
+                    }
+                    for(int run = 0; run < summary.runs; run++) {
+                        summary.finalCounts[code][run] = Integer.parseInt(values[run]);
+                    }
+                    summary.extinctions[code] = Integer.parseInt(
+                        properties.getProperty("extinctions." + code));
+                    summary.extinctionStepTotals[code] = Long.parseLong(
+                        properties.getProperty("extinctionStepTotal." + code));
+                }
+                return summary;
+            }
+            catch(NullPointerException | IndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Incomplete ensemble summary", e);
+            }
+        }
+
+        /**
+         * @return The number of runs finished.
+         */
+        public int getRuns()
+        {
+            return runs;
+        }
+
+        /**
+         * @return The number of runs in the whole ensemble.
+         */
+        public int getExpectedRuns()
+        {
+            return expectedRuns;
+        }
+
+        /**
+         * @return The mean final count of a species over the finished runs.
+         */
+        public double getMeanFinalCount(int speciesCode)
+        {
+            long total = 0;
+            for(int run = 0; run < runs; run++) {
+                total += finalCounts[speciesCode][run];
+            }
+            return runs == 0 ? 0 : (double) total / runs;
+        }
+
+        /**
+         * Return a quantile of the final count of a species over the
+         * finished runs, by the nearest-rank method.
+         * @param speciesCode The species.
+         * @param quantile The quantile, from 0 to 1; 0.5 for the median.
+         * @return The quantile, or 0 if no runs have finished.
+         */
+        public int getFinalCountQuantile(int speciesCode, double quantile)
+        {
+            if(runs == 0) {
+                return 0;
+            }
+            int[] sorted = Arrays.copyOf(finalCounts[speciesCode], runs);
+            Arrays.sort(sorted);
+            int rank = (int) Math.ceil(quantile * runs);
+            return sorted[Math.max(0, Math.min(runs - 1, rank - 1))];
+        }
+
+        /**
+         * @return The number of finished runs in which a species died out.
+         */
+        public int getExtinctions(int speciesCode)
+        {
+            return extinctions[speciesCode];
+        }
+
+        /**
+         * @return The mean step at which a species died out, over the runs
+         *         in which it did, or -1 if it never did.
+         */
+        public double getMeanExtinctionStep(int speciesCode)
+        {
+            return extinctions[speciesCode] == 0 ? -1
+                   : (double) extinctionStepTotals[speciesCode] / extinctions[speciesCode];
+        }
+
+        /**
+         * @return A table of the statistics of each registered species.
+         */
+        public String getDetails()
+        {
+            List<String> lines = new ArrayList<>();
+            lines.add("Runs: " + runs + " of " + expectedRuns);
+            for(int code = 0; code < Species.COUNT; code++) {
+                if(Species.get(code) != null) {
+                    lines.add(String.format("%s: mean %.1f, 5%% %d, median %d, 95%% %d, "
+                                            + "extinct in %d (mean step %.1f)",
+                                            Species.getName(code), getMeanFinalCount(code),
+                                            getFinalCountQuantile(code, 0.05),
+                                            getFinalCountQuantile(code, 0.5),
+                                            getFinalCountQuantile(code, 0.95),
+                                            getExtinctions(code), getMeanExtinctionStep(code)));
+                }
+            }
+            return String.join(System.lineSeparator(), lines) + System.lineSeparator();
+        }
+    }
+}
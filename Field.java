@@ -1,25 +1,111 @@
-import java.util.Collections; 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Iterator; 
 import java.util.LinkedList; 
 import java.util.List; 
-import java.util.Random; 
   
 /** 
 * Represent a rectangular grid of field positions. 
 * Each position is able to store a single animal. 
 *  
+* Alongside each occupant the field records its species code in a
+* byte array. Scans and neighbour tests should use getSpeciesAt, which
+* only touches the codes, and fetch the occupant itself only when it is
+* actually needed.
+*
+* The field is stored as square chunks of CHUNK_SIZE by CHUNK_SIZE
+* locations. A chunk is only allocated when something is placed in it,
+* and is released again when its last occupant is cleared, so a huge
+* field that is mostly empty costs little memory, and clearing, counting
+* and drawing need only visit the chunks that hold something.
+*
+* The field also notes which chunks place and clear have changed since
+* clearChanges was last called, normally at the start of each step, so
+* that whatever follows the state of the field, such as a view, need
+* only look again at the chunks that changed.
+*
+* Each chunk also keeps an occupancy bitboard, one long per row with a
+* bit per column, updated by place and clear. The eight neighbours of a
+* location are read from it with a few shifts as a mask, so the free
+* neighbour queries never look at the codes, and a random free neighbour
+* is chosen with one random number, by counting the bits of the mask and
+* selecting one of them.
+*
+* While the field is being updated from several threads at once, chunks
+* are allocated under a lock, and the release of emptied chunks is put
+* off until endConcurrentUpdates.
+*
+* The field also keeps a FieldStats object up to date with the number
+* of organisms of each species, as they are placed and cleared, and
+* holds the OrganismPool from which its newborns are drawn.
+*
+* A species may be simulated by a SpeciesLayer instead of by organisms.
+* Its cells are placed with placeCode, which records the species code
+* with no occupant, so getObjectAt returns null at them; they are
+* removed through the layer, which getLayer returns.
+*  
 * @author David J. Barnes and Michael Kölling 
 * @version 2016.02.29 
 */ 
 public class Field 
 { 
-    // A random number generator for providing random locations. 
-    private static final Random rand = Randomizer.getRandom(); 
+    // Row and column offsets of the eight neighbours of a location,
+    // in the order in which they are collected before shuffling.
+    private static final int[] ROW_OFFSETS = { -1, -1, -1, 0, 0, 1, 1, 1 };
+    private static final int[] COL_OFFSETS = { -1, 0, 1, -1, 1, -1, 0, 1 };
+    // Scratch space for neighbour queries, one per thread.
+    private static final ThreadLocal<Neighbors> scratch =
+        ThreadLocal.withInitial(Neighbors::new);
+    // The width and depth of a chunk are 2 to the power CHUNK_SHIFT.
+    public static final int CHUNK_SHIFT = 6;
+    public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    // How many released chunks are kept for reuse.
+    private static final int MAX_SPARE_CHUNKS = 64;
+    // The codes of one row of an empty chunk.
+    private static final byte[] EMPTY_ROW = new byte[CHUNK_SIZE];
+    // Updates a chunk's occupied count atomically.
+    private static final VarHandle OCCUPIED;
+    // Updates a word of a chunk's occupancy bitboard atomically.
+    private static final VarHandle OCCUPANCY = MethodHandles.arrayElementVarHandle(long[].class);
+    // The bits of a free neighbour mask, one per neighbour in the order
+    // of ROW_OFFSETS.
+    private static final int ALL_NEIGHBORS = 0xFF;
+
+    static {
+        try {
+            OCCUPIED = MethodHandles.lookup().findVarHandle(Chunk.class, "occupied", int.class);
+        }
+        catch(ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
      
     // The depth and width of the field. 
     private int depth, width; 
-    // Storage for the animals. 
-    private Object[][] field; 
+    // The number of chunks down and across the field.
+    private int chunksDown, chunksAcross;
+    // The chunks, by chunk row then chunk column; null where a chunk is empty.
+    private Chunk[] chunks;
+    // Released chunks, kept for reuse. They are always empty.
+    private ArrayDeque<Chunk> spareChunks;
+    // Whether the field is currently being updated from several threads.
+    private boolean concurrent;
+    // Whether each chunk has changed since clearChanges, by chunk index.
+    private boolean[] changed;
+    // The indexes of the changed chunks, in the order they first changed.
+    private int[] changedChunks;
+    private int changedCount;
+    // Counts of the organisms in the field.
+    private FieldStats stats;
+    // Dead organisms kept for reuse by births in this field.
+    private OrganismPool pool;
+    // The layers simulating species as cells, indexed by species code;
+    // null for species simulated by organisms.
+    private SpeciesLayer[] layers;
   
     /** 
      * Represent a field of the given dimensions. 
@@ -30,7 +116,15 @@ public class Field
     { 
         this.depth = depth; 
         this.width = width; 
-        field = new Object[depth][width]; 
+        chunksDown = (depth + CHUNK_MASK) >> CHUNK_SHIFT;
+        chunksAcross = (width + CHUNK_MASK) >> CHUNK_SHIFT;
+        chunks = new Chunk[Math.multiplyExact(chunksDown, chunksAcross)];
+        spareChunks = new ArrayDeque<>();
+        changed = new boolean[chunks.length];
+        changedChunks = new int[Math.min(chunks.length, CHUNK_SIZE)];
+        stats = new FieldStats();
+        pool = new OrganismPool();
+        layers = new SpeciesLayer[Species.COUNT];
     } 
      
     /** 
@@ -38,11 +132,18 @@ public class Field
      */ 
     public void clear() 
     { 
-        for(int row = 0; row < depth; row++) { 
-            for(int col = 0; col < width; col++) { 
-                field[row][col] = null; 
+        for(int chunkIndex = 0; chunkIndex < chunks.length; chunkIndex++) {
+            if(chunks[chunkIndex] != null) {
+                markChanged(chunkIndex);
+                chunks[chunkIndex] = null;
             } 
         } 
+        for(SpeciesLayer layer : layers) {
+            if(layer != null) {
+                layer.clear();
+            }
+        }
+        stats.reset();
     } 
      
     /** 
@@ -51,7 +152,30 @@ public class Field
      */ 
     public void clear(Location location) 
     { 
-        field[location.getRow()][location.getCol()] = null; 
+        clear(location.getRow(), location.getCol());
+    }
+
+    /**
+     * Clear the given location.
+     * @param row Row coordinate of the location.
+     * @param col Column coordinate of the location.
+     */
+    public void clear(int row, int col)
+    {
+        int chunkIndex = chunkIndex(row, col);
+        Chunk chunk = chunks[chunkIndex];
+        if(chunk == null) {
+            return;
+        }
+        int cell = cellIndex(row, col);
+        if(chunk.codes[cell] != Species.EMPTY) {
+            stats.decrementCount(chunk.codes[cell]);
+            chunk.codes[cell] = Species.EMPTY;
+            chunk.occupants[cell] = null;
+            setOccupancy(chunk, row, col, false);
+            markChanged(chunkIndex);
+            addOccupied(chunkIndex, chunk, -1);
+        }
     } 
      
     /** 
@@ -76,7 +200,81 @@ public class Field
      */ 
     public void place(Object organism, Location location) 
     { 
-        field[location.getRow()][location.getCol()] = organism; 
+        byte code = Species.codeOf(organism);
+        if(code == Species.EMPTY) {
+            clear(location);
+            return;
+        }
+        place(code, organism, location.getRow(), location.getCol());
+    }
+
+    /**
+     * Place a cell of a species layer at the given location: record the
+     * species code with no occupant. Whatever was at the location is lost.
+     * @param code The species code.
+     * @param row Row coordinate of the location.
+     * @param col Column coordinate of the location.
+     */
+    public void placeCode(byte code, int row, int col)
+    {
+        place(code, null, row, col);
+    }
+
+    /**
+     * Install the layer that simulates a species, replacing any other
+     * for the same species. The field's cells of that species must
+     * already be cells of the layer.
+     * @param layer The layer.
+     */
+    public void setLayer(SpeciesLayer layer)
+    {
+        layers[layer.getSpeciesCode()] = layer;
+    }
+
+    /**
+     * Stop simulating a species by a layer. The layer's cells must first
+     * have been replaced by organisms or cleared.
+     * @param code The species code.
+     */
+    public void removeLayer(int code)
+    {
+        layers[code] = null;
+    }
+
+    /**
+     * Return the layer that simulates a species, if any.
+     * @param code The species code.
+     * @return The layer, or null if the species is simulated by organisms.
+     */
+    public SpeciesLayer getLayer(int code)
+    {
+        return layers[code];
+    }
+
+    /**
+     * Record a species code and its occupant, which may be null, at the
+     * given location, keeping the counts and the chunk up to date.
+     */
+    private void place(byte code, Object occupant, int row, int col)
+    {
+        int chunkIndex = chunkIndex(row, col);
+        Chunk chunk = chunks[chunkIndex];
+        if(chunk == null) {
+            chunk = allocateChunk(chunkIndex);
+        }
+        int cell = cellIndex(row, col);
+        byte old = chunk.codes[cell];
+        if(old != Species.EMPTY) {
+            stats.decrementCount(old);
+        }
+        stats.incrementCount(code);
+        chunk.codes[cell] = code;
+        chunk.occupants[cell] = occupant;
+        markChanged(chunkIndex);
+        if(old == Species.EMPTY) {
+            setOccupancy(chunk, row, col, true);
+            addOccupied(chunkIndex, chunk, 1);
+        }
     } 
      
     /** 
@@ -97,7 +295,209 @@ public class Field
      */ 
     public Object getObjectAt(int row, int col) 
     { 
-        return field[row][col]; 
+        Chunk chunk = chunks[chunkIndex(row, col)];
+        return chunk == null ? null : chunk.occupants[cellIndex(row, col)];
+    }
+
+    /**
+     * Return the species code of the organism at the given location.
+     * @param location Where in the field.
+     * @return The species code, or Species.EMPTY if there is no organism.
+     */
+    public byte getSpeciesAt(Location location)
+    {
+        return getSpeciesAt(location.getRow(), location.getCol());
+    }
+
+    /**
+     * Return the species code of the organism at the given location.
+     * @param row The desired row.
+     * @param col The desired column.
+     * @return The species code, or Species.EMPTY if there is no organism.
+     */
+    public byte getSpeciesAt(int row, int col)
+    {
+        Chunk chunk = chunks[chunkIndex(row, col)];
+        return chunk == null ? Species.EMPTY : chunk.codes[cellIndex(row, col)];
+    }
+
+    /**
+     * @return The number of rows of chunks.
+     */
+    public int getChunksDown()
+    {
+        return chunksDown;
+    }
+
+    /**
+     * @return The number of columns of chunks.
+     */
+    public int getChunksAcross()
+    {
+        return chunksAcross;
+    }
+
+    /**
+     * Tell whether a chunk is empty. The locations of the chunk in chunk
+     * row r and chunk column c are those whose row shifted right by
+     * CHUNK_SHIFT is r and whose column shifted right by CHUNK_SHIFT is c.
+     * @param chunkRow The chunk row.
+     * @param chunkCol The chunk column.
+     * @return true if nothing is in the chunk.
+     */
+    public boolean isChunkEmpty(int chunkRow, int chunkCol)
+    {
+        return chunks[chunkRow * chunksAcross + chunkCol] == null;
+    }
+
+    /**
+     * Forget which chunks have changed, as at the start of a step.
+     */
+    public void clearChanges()
+    {
+        for(int n = 0; n < changedCount; n++) {
+            changed[changedChunks[n]] = false;
+        }
+        changedCount = 0;
+    }
+
+    /**
+     * @return The number of chunks changed since clearChanges.
+     */
+    public int getChangedChunkCount()
+    {
+        return changedCount;
+    }
+
+    /**
+     * Return one of the chunks changed since clearChanges. Its chunk row
+     * is the index divided by getChunksAcross, and its chunk column is
+     * the remainder.
+     * @param n Which changed chunk, from 0 to getChangedChunkCount() - 1.
+     * @return The index of the chunk.
+     */
+    public int getChangedChunk(int n)
+    {
+        return changedChunks[n];
+    }
+
+    /**
+     * Tell whether a chunk has changed since clearChanges.
+     * @param chunkRow The chunk row.
+     * @param chunkCol The chunk column.
+     * @return true if anything in the chunk was placed or cleared.
+     */
+    public boolean isChunkChanged(int chunkRow, int chunkCol)
+    {
+        return changed[chunkRow * chunksAcross + chunkCol];
+    }
+
+    /**
+     * Prepare for the field to be updated from several threads at once,
+     * together with its statistics and pool.
+     */
+    public void beginConcurrentUpdates()
+    {
+        concurrent = true;
+        stats.beginConcurrentUpdates();
+        pool.beginConcurrentUpdates();
+    }
+
+    /**
+     * Return to updates from a single thread, and release the chunks that
+     * were emptied meanwhile. This must be called once all the threads
+     * updating the field have finished.
+     */
+    public synchronized void endConcurrentUpdates()
+    {
+        concurrent = false;
+        pool.endConcurrentUpdates();
+        stats.endConcurrentUpdates();
+        for(int chunkIndex = 0; chunkIndex < chunks.length; chunkIndex++) {
+            Chunk chunk = chunks[chunkIndex];
+            if(chunk != null && chunk.occupied == 0) {
+                releaseChunk(chunkIndex, chunk);
+            }
+        }
+    }
+
+    /**
+     * Return the statistics on the organisms in this field.
+     * They are kept up to date as organisms are placed and cleared.
+     * @return The field's statistics.
+     */
+    public FieldStats getStats()
+    {
+        return stats;
+    }
+
+    /**
+     * Copy the species code of every location into a buffer, in row order.
+     * @param buffer The buffer, with room for depth * width bytes.
+     */
+    public void copyCodes(ByteBuffer buffer)
+    {
+        for(int row = 0; row < depth; row++) {
+            int rowStart = (row & CHUNK_MASK) << CHUNK_SHIFT;
+            for(int chunkCol = 0; chunkCol < chunksAcross; chunkCol++) {
+                int length = Math.min(CHUNK_SIZE, width - (chunkCol << CHUNK_SHIFT));
+                Chunk chunk = chunks[(row >> CHUNK_SHIFT) * chunksAcross + chunkCol];
+                if(chunk == null) {
+                    buffer.put(EMPTY_ROW, 0, length);
+                }
+                else {
+                    buffer.put(chunk.codes, rowStart, length);
+                }
+            }
+        }
+    }
+
+    /**
+     * Copy the species codes of the locations of one chunk into an array
+     * holding the code of every location in row order.
+     * @param chunkIndex The index of the chunk, as given by getChangedChunk.
+     * @param codes The array, of depth * width codes.
+     */
+    public void copyChunkCodes(int chunkIndex, byte[] codes)
+    {
+        int top = (chunkIndex / chunksAcross) << CHUNK_SHIFT;
+        int bottom = Math.min(top + CHUNK_SIZE, depth);
+        int left = (chunkIndex % chunksAcross) << CHUNK_SHIFT;
+        int length = Math.min(CHUNK_SIZE, width - left);
+        Chunk chunk = chunks[chunkIndex];
+        for(int row = top; row < bottom; row++) {
+            byte[] source = chunk == null ? EMPTY_ROW : chunk.codes;
+            int sourceStart = chunk == null ? 0 : (row & CHUNK_MASK) << CHUNK_SHIFT;
+            System.arraycopy(source, sourceStart, codes, row * width + left, length);
+        }
+    }
+
+    /**
+     * @return The pool of organisms that can be reused in this field.
+     */
+    public OrganismPool getPool()
+    {
+        return pool;
+    }
+
+    /**
+     * Count the organisms of each species in the field by scanning
+     * every location of the chunks in use. getStats provides the same
+     * counts without a scan. Only the species codes are examined.
+     * @param counts Array indexed by species code that receives the counts.
+     *               It must have at least Species.COUNT elements.
+     */
+    public void countSpecies(int[] counts)
+    {
+        Arrays.fill(counts, 0);
+        for(Chunk chunk : chunks) {
+            if(chunk != null) {
+                for(byte code : chunk.codes) {
+                    counts[code]++;
+                }
+            }
+        }
+        counts[Species.EMPTY] = 0;
     } 
      
     /** 
@@ -110,8 +510,8 @@ public class Field
      */ 
     public Location randomAdjacentLocation(Location location) 
     { 
-        List<Location> adjacent = adjacentLocations(location); 
-        return adjacent.get(0); 
+        Neighbors adjacent = adjacentCells(location);
+        return adjacent.getLocation(0);
     } 
      
     /** 
@@ -121,14 +521,50 @@ public class Field
      */ 
     public List<Location> getFreeAdjacentLocations(Location location) 
     { 
-        List<Location> free = new LinkedList<>(); 
-        List<Location> adjacent = adjacentLocations(location); 
-        for(Location next : adjacent) { 
-            if(getObjectAt(next) == null) { 
-                free.add(next); 
-            } 
+        return toList(freeAdjacentCells(location));
+    }
+
+    /**
+     * Find the free locations adjacent to the given one, in random order.
+     * Nothing is allocated: the result is held in this thread's scratch
+     * Neighbors object and is only valid until the next neighbour query.
+     * @param location Get locations adjacent to this.
+     * @return The free adjacent locations.
+     */
+    public Neighbors freeAdjacentCells(Location location)
+    {
+        return freeAdjacentCells(location.getRow(), location.getCol());
+    }
+
+    /**
+     * Find the free locations adjacent to the given one, in random order,
+     * as freeAdjacentCells(Location) does.
+     * @param row Row coordinate of the location.
+     * @param col Column coordinate of the location.
+     * @return The free adjacent locations.
+     */
+    public Neighbors freeAdjacentCells(int row, int col)
+    {
+        Neighbors neighbors = scratch.get();
+        neighbors.clear();
+        for(int free = freeAdjacentMask(row, col); free != 0; free &= free - 1) {
+            int n = Integer.numberOfTrailingZeros(free);
+            neighbors.add(row + ROW_OFFSETS[n], col + COL_OFFSETS[n]);
         } 
-        return free; 
+        neighbors.shuffle(Randomizer.getRandom());
+        return neighbors;
+    }
+
+    /**
+     * Tell whether any location adjacent to the given one is free. No
+     * random number is drawn.
+     * @param row Row coordinate of the location.
+     * @param col Column coordinate of the location.
+     * @return true if a neighbour within the grid is empty.
+     */
+    public boolean hasFreeAdjacentLocation(int row, int col)
+    {
+        return freeAdjacentMask(row, col) != 0;
     } 
      
     /** 
@@ -141,13 +577,109 @@ public class Field
      */ 
     public Location freeAdjacentLocation(Location location) 
     { 
-        // The available free ones. 
-        List<Location> free = getFreeAdjacentLocations(location); 
-        if(free.size() > 0) { 
-            return free.get(0); 
+        int cell = freeAdjacentCell(location.getRow(), location.getCol());
+        return cell < 0 ? null : new Location(cell / width, cell % width);
+    }
+
+    /**
+     * Pick a free location adjacent to the given one at random, as
+     * freeAdjacentLocation does, without creating a Location.
+     * @param row Row coordinate of the location.
+     * @param col Column coordinate of the location.
+     * @return The index row * width + col of the free location, or -1
+     *         if there is none.
+     */
+    public int freeAdjacentCell(int row, int col)
+    {
+        // The available free ones, one bit each.
+        int free = freeAdjacentMask(row, col);
+        if(free == 0) {
+            return -1;
+        }
+        // Clear all but the chosen one of the set bits.
+        for(int skip = Randomizer.getRandom().nextInt(Integer.bitCount(free)); skip > 0; skip--) {
+            free &= free - 1;
+        }
+        int n = Integer.numberOfTrailingZeros(free);
+        return (row + ROW_OFFSETS[n]) * width + col + COL_OFFSETS[n];
+    }
+
+    /**
+     * Return which of the eight neighbours of a location are free, as a
+     * mask with bit n set if the neighbour at ROW_OFFSETS[n],
+     * COL_OFFSETS[n] is inside the grid and empty.
+     */
+    private int freeAdjacentMask(int row, int col)
+    {
+        int above = occupiedAround(row - 1, col);
+        int beside = occupiedAround(row, col);
+        int below = occupiedAround(row + 1, col);
+        // Bit 1 of beside is the location itself, which is skipped.
+        int occupied = above | (beside & 1) << 3 | (beside >> 2) << 4 | below << 5;
+        return ~occupied & ALL_NEIGHBORS;
+    }
+
+    /**
+     * Return the occupancy of three locations side by side, as bits 0, 1
+     * and 2 for the columns col - 1, col and col + 1 of a row. Locations
+     * outside the grid count as occupied.
+     */
+    private int occupiedAround(int row, int col)
+    {
+        if(row < 0 || row >= depth) {
+            return 7;
+        }
+        int bits;
+        int shift = (col & CHUNK_MASK) - 1;
+        if(shift >= 0 && shift < CHUNK_SIZE - 2) {
+            // All three columns are in the same chunk.
+            Chunk chunk = chunks[chunkIndex(row, col)];
+            bits = chunk == null ? 0 : (int) (chunk.occupancy[row & CHUNK_MASK] >>> shift) & 7;
         } 
         else { 
-            return null; 
+            bits = (isOccupied(row, col - 1) ? 1 : 0) | (isOccupied(row, col) ? 2 : 0)
+                   | (isOccupied(row, col + 1) ? 4 : 0);
+        }
+        if(col == width - 1) {
+            bits |= 4;
+        }
+        return bits;
+    }
+
+    /**
+     * Tell whether a location in a row of the grid is occupied, counting
+     * the columns outside the grid as occupied.
+     */
+    private boolean isOccupied(int row, int col)
+    {
+        if(col < 0 || col >= width) {
+            return true;
+        }
+        Chunk chunk = chunks[chunkIndex(row, col)];
+        return chunk != null && (chunk.occupancy[row & CHUNK_MASK] & 1L << col) != 0;
+    }
+
+    /**
+     * Set or clear the bit of a location in its chunk's occupancy
+     * bitboard, atomically while several threads update the field.
+     */
+    private void setOccupancy(Chunk chunk, int row, int col, boolean occupied)
+    {
+        long bit = 1L << col;
+        int word = row & CHUNK_MASK;
+        if(concurrent) {
+            if(occupied) {
+                OCCUPANCY.getAndBitwiseOr(chunk.occupancy, word, bit);
+            }
+            else {
+                OCCUPANCY.getAndBitwiseAnd(chunk.occupancy, word, ~bit);
+            }
+        }
+        else if(occupied) {
+            chunk.occupancy[word] |= bit;
+        }
+        else {
+            chunk.occupancy[word] &= ~bit;
         } 
     } 
   
@@ -161,27 +693,178 @@ public class Field
     public List<Location> adjacentLocations(Location location) 
     { 
         assert location != null : "Null location passed to adjacentLocations"; 
-        // The list of locations to be returned. 
-        List<Location> locations = new LinkedList<>(); 
-        if(location != null) { 
-            int row = location.getRow(); 
-            int col = location.getCol(); 
-            for(int roffset = -1; roffset <= 1; roffset++) { 
-                int nextRow = row + roffset; 
-                if(nextRow >= 0 && nextRow < depth) { 
-                    for(int coffset = -1; coffset <= 1; coffset++) { 
-                        int nextCol = col + coffset; 
-                        // Exclude invalid locations and the original location. 
-                        if(nextCol >= 0 && nextCol < width && (roffset != 0 || coffset != 0)) { 
-                            locations.add(new Location(nextRow, nextCol)); 
-                        } 
-                    } 
+        if(location == null) {
+            return new LinkedList<>();
+        }
+        return toList(adjacentCells(location));
+    }
+
+    /**
+     * Find the locations adjacent to the given one, in random order.
+     * The result does not include the location itself and all locations
+     * lie within the grid. Nothing is allocated: the result is held in
+     * this thread's scratch Neighbors object and is only valid until the
+     * next neighbour query.
+     * @param location The location from which to generate adjacencies.
+     * @return The adjacent locations.
+     */
+    public Neighbors adjacentCells(Location location)
+    {
+        return adjacentCells(location.getRow(), location.getCol());
+    }
+
+    /**
+     * Find the locations adjacent to the given one, in random order, as
+     * adjacentCells(Location) does.
+     * @param row Row coordinate of the location.
+     * @param col Column coordinate of the location.
+     * @return The adjacent locations.
+     */
+    public Neighbors adjacentCells(int row, int col)
+    {
+        Neighbors neighbors = scratch.get();
+        neighbors.clear();
+        if(row > 0 && row < depth - 1 && col > 0 && col < width - 1) {
+            // All eight neighbours are inside the grid.
+            for(int n = 0; n < ROW_OFFSETS.length; n++) {
+                neighbors.add(row + ROW_OFFSETS[n], col + COL_OFFSETS[n]);
+            }
+        }
+        else {
+            for(int n = 0; n < ROW_OFFSETS.length; n++) {
+                int nextRow = row + ROW_OFFSETS[n];
+                int nextCol = col + COL_OFFSETS[n];
+                if(nextRow >= 0 && nextRow < depth && nextCol >= 0 && nextCol < width) {
+                    neighbors.add(nextRow, nextCol);
                 } 
             } 
+        }
+        // Several other methods rely on the neighbours being in a random order.
+        neighbors.shuffle(Randomizer.getRandom());
+        return neighbors;
+    }
              
-            // Shuffle the list. Several other methods rely on the list 
-            // being in a random order. 
-            Collections.shuffle(locations, rand); 
+    /**
+     * @return The index of the chunk holding the given location.
+     */
+    private int chunkIndex(int row, int col)
+    {
+        return (row >> CHUNK_SHIFT) * chunksAcross + (col >> CHUNK_SHIFT);
+    }
+
+    /**
+     * @return The index of the given location within its chunk.
+     */
+    private static int cellIndex(int row, int col)
+    {
+        return ((row & CHUNK_MASK) << CHUNK_SHIFT) | (col & CHUNK_MASK);
+    }
+
+    /**
+     * Note that a chunk has changed. Only the first change to a chunk
+     * since clearChanges has any cost beyond a test.
+     */
+    private void markChanged(int chunkIndex)
+    {
+        if(!changed[chunkIndex]) {
+            if(concurrent) {
+                synchronized(this) {
+                    if(!changed[chunkIndex]) {
+                        addChanged(chunkIndex);
+                    } 
+                } 
+            } 
+            else {
+                addChanged(chunkIndex);
+            }
+        }
+    }
+
+    /**
+     * Add a chunk to the changed chunks.
+     */
+    private void addChanged(int chunkIndex)
+    {
+        if(changedCount == changedChunks.length) {
+            changedChunks = Arrays.copyOf(changedChunks,
+                                          Math.min(chunks.length, changedCount * 2));
+        }
+        changedChunks[changedCount++] = chunkIndex;
+        changed[chunkIndex] = true;
+    }
+
+    /**
+     * Return the chunk with the given index, allocating it if necessary.
+     * @param chunkIndex The index of the chunk.
+     * @return The chunk.
+     */
+    private Chunk allocateChunk(int chunkIndex)
+    {
+        if(concurrent) {
+            synchronized(this) {
+                return createChunk(chunkIndex);
+            }
+        }
+        return createChunk(chunkIndex);
+    }
+
+    /**
+     * Install a spare or new chunk at the given index, unless one is
+     * already there.
+     * @return The chunk at the index.
+     */
+    private Chunk createChunk(int chunkIndex)
+    {
+        Chunk chunk = chunks[chunkIndex];
+        if(chunk == null) {
+            chunk = spareChunks.poll();
+            if(chunk == null) {
+                chunk = new Chunk();
+            }
+            chunks[chunkIndex] = chunk;
+        }
+        return chunk;
+    }
+
+    /**
+     * Remove an empty chunk from the field, keeping it for reuse if
+     * there are few spares.
+     */
+    private void releaseChunk(int chunkIndex, Chunk chunk)
+    {
+        chunks[chunkIndex] = null;
+        if(spareChunks.size() < MAX_SPARE_CHUNKS) {
+            spareChunks.push(chunk);
+        }
+    }
+
+    /**
+     * Change the number of occupied locations of a chunk, releasing it
+     * if it has become empty and only one thread is updating the field.
+     */
+    private void addOccupied(int chunkIndex, Chunk chunk, int delta)
+    {
+        if(concurrent) {
+            OCCUPIED.getAndAdd(chunk, delta);
+        }
+        else {
+            chunk.occupied += delta;
+            if(chunk.occupied == 0) {
+                releaseChunk(chunkIndex, chunk);
+            }
+        }
+    }
+
+    /**
+     * Copy the contents of a neighbour query into a new list.
+     * @param neighbors The result of the query.
+     * @return A list of the same locations, in the same order.
+     */
+    private List<Location> toList(Neighbors neighbors)
+    {
+        List<Location> locations = new LinkedList<>();
+        for(int n = 0; n < neighbors.size(); n++) {
+            locations.add(neighbors.getLocation(n));
         } 
         return locations; 
     } 
@@ -203,4 +886,17 @@ public class Field
     { 
         return width; 
     } 
-} 
\ No newline at end of file
+
+    /**
+     * A square block of locations: the species code and the occupant of
+     * each, by row then column within the chunk, a bit per column of each
+     * row that is set where a location is occupied, and how many are occupied.
+     */
+    private static class Chunk
+    {
+        final byte[] codes = new byte[CHUNK_SIZE * CHUNK_SIZE];
+        final Object[] occupants = new Object[CHUNK_SIZE * CHUNK_SIZE];
+        final long[] occupancy = new long[CHUNK_SIZE];
+        int occupied;
+    }
+} 
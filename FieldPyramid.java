@@ -0,0 +1,181 @@
+/**
+ * A summary of the species codes of a field at successively lower
+ * resolutions, for drawing a large field zoomed out. Level 0 holds the
+ * code of every location. Each location of level n + 1 stands for a
+ * square of two by two locations of level n and holds the most common
+ * species among them, or EMPTY if all four are empty; empty locations
+ * are not counted, so that a thinly spread species stays visible.
+ * The highest level is a single location.
+ *
+ * The pyramid is kept up to date a chunk at a time: when the codes of
+ * a chunk of the field change, only the locations above that chunk
+ * are worked out again.
+ *
+ * @author David J. Barnes and Michael Kölling
+ * @version 2016.02.29
+ */
+public class FieldPyramid
+{
+    // The number of chunks across the field.
+    private final int chunksAcross;
+    // The codes of each level, by row then column.
+    private final byte[][] levels;
+    // The depth and width of each level.
+    private final int[] depths, widths;
+    // The codes of the square being summarised.
+    private final byte[] square;
+
+    /**
+     * Create a pyramid for a field of the given size.
+     * @param codes The species code of every location of the field, in
+     *              row order. The pyramid is built from them.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     */
+    public FieldPyramid(byte[] codes, int depth, int width)
+    {
+        int count = 1;
+        while(shrink(depth, count - 1) > 1 || shrink(width, count - 1) > 1) {
+            count++;
+        }
+        levels = new byte[count][];
+        depths = new int[count];
+        widths = new int[count];
+        for(int level = 0; level < count; level++) {
+            depths[level] = shrink(depth, level);
+            widths[level] = shrink(width, level);
+            if(level > 0) {
+                levels[level] = new byte[depths[level] * widths[level]];
+            }
+        }
+        levels[0] = codes;
+        chunksAcross = (width + Field.CHUNK_SIZE - 1) >> Field.CHUNK_SHIFT;
+        square = new byte[4];
+
+        int chunks = ((depth + Field.CHUNK_SIZE - 1) >> Field.CHUNK_SHIFT) * chunksAcross;
+        for(int chunkIndex = 0; chunkIndex < chunks; chunkIndex++) {
+            update(codes, chunkIndex);
+        }
+    }
+
+    /**
+     * @return The number of levels, including level 0.
+     */
+    public int getLevels()
+    {
+        return levels.length;
+    }
+
+    /**
+     * @return The depth of a level.
+     */
+    public int getDepth(int level)
+    {
+        return depths[level];
+    }
+
+    /**
+     * @return The width of a level.
+     */
+    public int getWidth(int level)
+    {
+        return widths[level];
+    }
+
+    /**
+     * Return the codes of a level, by row then column. They must not be changed.
+     * @param level The level.
+     * @return The codes.
+     */
+    public byte[] getCodes(int level)
+    {
+        return levels[level];
+    }
+
+    /**
+     * Make a newer copy of the codes of the field level 0. The chunks in
+     * which it differs from the old one must then be passed to update.
+     * @param codes The species code of every location of the field, in
+     *              row order.
+     */
+    public void setCodes(byte[] codes)
+    {
+        levels[0] = codes;
+    }
+
+    /**
+     * Work out again the locations above a chunk of the field whose
+     * codes have changed.
+     * @param codes The species code of every location of the field,
+     *              in row order. They become level 0.
+     * @param chunkIndex The index of the chunk, as given by
+     *                   Field.getChangedChunk.
+     */
+    public void update(byte[] codes, int chunkIndex)
+    {
+        levels[0] = codes;
+        int top = (chunkIndex / chunksAcross) << Field.CHUNK_SHIFT;
+        int left = (chunkIndex % chunksAcross) << Field.CHUNK_SHIFT;
+        int bottom = Math.min(top + Field.CHUNK_SIZE, depths[0]);
+        int right = Math.min(left + Field.CHUNK_SIZE, widths[0]);
+        for(int level = 1; level < levels.length; level++) {
+            top >>= 1;
+            left >>= 1;
+            bottom = shrink(bottom, 1);
+            right = shrink(right, 1);
+            for(int row = top; row < bottom; row++) {
+                for(int col = left; col < right; col++) {
+                    levels[level][row * widths[level] + col] = summarise(level - 1, row * 2,
+                                                                         col * 2);
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the most common species in the square of up to two by two
+     * locations with the given top left corner, ignoring empty locations.
+     */
+    private byte summarise(int level, int row, int col)
+    {
+        byte[] codes = levels[level];
+        int width = widths[level];
+        int size = 0;
+        square[size++] = codes[row * width + col];
+        if(col + 1 < width) {
+            square[size++] = codes[row * width + col + 1];
+        }
+        if(row + 1 < depths[level]) {
+            square[size++] = codes[(row + 1) * width + col];
+            if(col + 1 < width) {
+                square[size++] = codes[(row + 1) * width + col + 1];
+            }
+        }
+
+        byte best = Species.EMPTY;
+        int bestCount = 0;
+        for(int n = 0; n < size; n++) {
+            if(square[n] != Species.EMPTY) {
+                int count = 0;
+                for(int m = 0; m < size; m++) {
+                    if(square[m] == square[n]) {
+                        count++;
+                    }
+                }
+                if(count > bestCount) {
+                    best = square[n];
+                    bestCount = count;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return A length divided by 2 to the given power, rounded up.
+     */
+    private static int shrink(int length, int power)
+    {
+        return ((length - 1) >> power) + 1;
+    }
+}
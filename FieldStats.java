@@ -1,20 +1,39 @@
-import java.awt.Color; 
-import java.util.HashMap; 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
   
 /** 
 * This class collects and provides some statistical data on the state  
 * of a field. It is flexible: it will create and maintain a counter  
-* for any class of object that is found within the field. 
+* for any species of organism that is found within the field.
+*
+* The counts are kept up to date as organisms are placed in and
+* cleared from the field, so asking for them costs time proportional
+* to the number of species rather than to the size of the field.
+* Births and deaths are also recorded, per step.
+*
+* While the field is being updated from several threads at once, each
+* thread records its changes privately; they are added to the totals
+* by endConcurrentUpdates.
 *  
 * @author David J. Barnes and Michael Kölling 
 * @version 2016.02.29 
 */ 
 public class FieldStats 
 { 
-    // Counters for each type of entity (deer, grass, tree) in the simulation. 
-    private HashMap<Class, Counter> counters; 
-    // Whether the counters are currently up to date. 
-    private boolean countsValid; 
+    // Counters for each type of entity (deer, grass, tree) in the simulation,
+    // indexed by species code. A counter is created when a species is first seen.
+    private Counter[] counters;
+    // Births and deaths in the current step, indexed by species code.
+    private int[] births;
+    private int[] deaths;
+    // Whether the field is currently being updated from several threads.
+    private boolean concurrent;
+    // Each thread's unmerged changes to the counts, births and deaths,
+    // held as three consecutive blocks of Species.COUNT entries.
+    private ThreadLocal<int[]> localChanges;
+    // The unmerged changes of every thread.
+    private List<int[]> allChanges;
   
     /** 
      * Construct a FieldStats object. 
@@ -23,65 +42,206 @@ public class FieldStats
     { 
         // Set up a collection for counters for each type of organism that 
         // we might find 
-        counters = new HashMap<>(); 
-        countsValid = true; 
+        counters = new Counter[Species.COUNT];
+        births = new int[Species.COUNT];
+        deaths = new int[Species.COUNT];
+        localChanges = new ThreadLocal<>();
+        allChanges = new ArrayList<>();
     } 
   
     /** 
      * Get details of what is in the field. 
      * @return A string describing what is in the field. 
      */ 
-    public String getPopulationDetails(Field field) 
+    public String getPopulationDetails()
     { 
-        StringBuffer buffer = new StringBuffer(); 
-        if(!countsValid) { 
-            generateCounts(field); 
-        } 
-        for(Class key : counters.keySet()) { 
-            Counter info = counters.get(key); 
-            buffer.append(info.getName()); 
-            buffer.append(": "); 
-            buffer.append(info.getCount()); 
-            buffer.append(' '); 
+        StringBuilder buffer = new StringBuilder();
+        for(Counter info : counters) {
+            if(info != null) {
+                buffer.append(info.getName());
+                buffer.append(": ");
+                buffer.append(info.getCount());
+                buffer.append(' ');
+            }
         } 
         return buffer.toString(); 
     } 
      
     /** 
-     * Invalidate the current set of statistics; reset all  
-     * counts to zero. 
+     * Reset all counts to zero, as when the field is emptied.
      */ 
     public void reset() 
     { 
-        countsValid = false; 
-        for(Class key : counters.keySet()) { 
-            Counter count = counters.get(key); 
-            count.reset(); 
+        for(Counter count : counters) {
+            if(count != null) {
+                count.reset();
+            }
+        }
+        startStep();
+    }
+
+    /**
+     * Reset the birth and death counts at the start of a step.
+     */
+    public void startStep()
+    {
+        for(int code = 0; code < Species.COUNT; code++) {
+            births[code] = 0;
+            deaths[code] = 0;
         } 
     } 
   
     /** 
-     * Increment the count for one class of organism. 
-     * @param organismClass The class of organism to increment. 
+     * Increment the count for one species of organism.
+     * Called by the field when an organism is placed.
+     * @param speciesCode The code of the species to increment.
      */ 
-    public void incrementCount(Class organismClass) 
+    public void incrementCount(int speciesCode)
     { 
-        Counter count = counters.get(organismClass); 
-        if(count == null) { 
-            // We do not have a counter for this species yet. 
-            // Create one. 
-            count = new Counter(organismClass.getName()); 
-            counters.put(organismClass, count); 
+        if(concurrent) {
+            localChanges()[speciesCode]++;
         } 
-        count.increment(); 
+        else {
+            counterFor(speciesCode).increment();
+        }
     } 
   
     /** 
-     * Indicate that an organism count has been completed. 
+     * Decrement the count for one species of organism.
+     * Called by the field when an organism is cleared.
+     * @param speciesCode The code of the species to decrement.
      */ 
-    public void countFinished() 
+    public void decrementCount(int speciesCode)
     { 
-        countsValid = true; 
+        if(concurrent) {
+            localChanges()[speciesCode]--;
+        }
+        else {
+            counters[speciesCode].decrement();
+        }
+    }
+
+    /**
+     * Record the birth of an organism in the current step.
+     * @param speciesCode The code of the newborn's species.
+     */
+    public void recordBirth(int speciesCode)
+    {
+        if(concurrent) {
+            localChanges()[Species.COUNT + speciesCode]++;
+        }
+        else {
+            births[speciesCode]++;
+        }
+    }
+
+    /**
+     * Record the death of an organism in the current step.
+     * @param speciesCode The code of the dead organism's species.
+     */
+    public void recordDeath(int speciesCode)
+    {
+        if(concurrent) {
+            localChanges()[2 * Species.COUNT + speciesCode]++;
+        }
+        else {
+            deaths[speciesCode]++;
+        }
+    }
+
+    /**
+     * Prepare for the field to be updated from several threads at once.
+     * Until endConcurrentUpdates is called, the counts must not be read.
+     */
+    public void beginConcurrentUpdates()
+    {
+        concurrent = true;
+    }
+
+    /**
+     * Add the changes made by every thread since beginConcurrentUpdates
+     * to the totals. This must be called once all those threads have
+     * finished updating the field.
+     */
+    public void endConcurrentUpdates()
+    {
+        concurrent = false;
+        synchronized(allChanges) {
+            for(int[] changes : allChanges) {
+                for(int code = 0; code < Species.COUNT; code++) {
+                    if(changes[code] != 0) {
+                        counterFor(code).add(changes[code]);
+                    }
+                    births[code] += changes[Species.COUNT + code];
+                    deaths[code] += changes[2 * Species.COUNT + code];
+                }
+                Arrays.fill(changes, 0);
+            }
+        }
+    }
+
+    /**
+     * @return How many organisms of the given species are in the field.
+     */
+    public int getCount(int speciesCode)
+    {
+        Counter info = counters[speciesCode];
+        return info == null ? 0 : info.getCount();
+    }
+
+    /**
+     * @return How many organisms of the given species were born this step.
+     */
+    public int getBirths(int speciesCode)
+    {
+        return births[speciesCode];
+    }
+
+    /**
+     * @return How many organisms of the given species died this step.
+     */
+    public int getDeaths(int speciesCode)
+    {
+        return deaths[speciesCode];
+    }
+
+    /**
+     * @return How many organisms of all species were born this step.
+     */
+    public int getTotalBirths()
+    {
+        int total = 0;
+        for(int count : births) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * @return How many organisms of all species died this step.
+     */
+    public int getTotalDeaths()
+    {
+        int total = 0;
+        for(int count : deaths) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * @return How many species have at least one organism in the field.
+     */
+    public int getLivingSpecies()
+    {
+        // How many counts are non-zero.
+        int nonZero = 0;
+        for(Counter info : counters) {
+            if(info != null && info.getCount() > 0) {
+                nonZero++;
+            }
+        }
+        return nonZero;
     } 
   
     /** 
@@ -89,40 +249,42 @@ public class FieldStats
      * I.e., should it continue to run. 
      * @return true If there is more than one species alive. 
      */ 
-    public boolean isViable(Field field) 
+    public boolean isViable()
     { 
-        // How many counts are non-zero. 
-        int nonZero = 0; 
-        if(!countsValid) { 
-            generateCounts(field); 
-        } 
-        for(Class key : counters.keySet()) { 
-            Counter info = counters.get(key); 
-            if(info.getCount() > 0) { 
-                nonZero++; 
-            } 
-        } 
-        return nonZero > 1; 
+        return getLivingSpecies() > 1;
     } 
      
     /** 
-     * Generate counts of the number of deer, trees, and rabbits. 
-     * These are not kept up to date as deer, trees, and rabbits 
-     * are placed in the field, but only when a request 
-     * is made for the information. 
-     * @param field The field to generate the stats for. 
+     * Return the current thread's unmerged changes, creating them if necessary.
+     * @return The thread's changes.
      */ 
-    private void generateCounts(Field field) 
+    private int[] localChanges()
     { 
-        reset(); 
-        for(int row = 0; row < field.getDepth(); row++) { 
-            for(int col = 0; col < field.getWidth(); col++) { 
-                Object organism = field.getObjectAt(row, col); 
-                if(organism != null) { 
-                    incrementCount(organism.getClass()); 
-                } 
+        int[] changes = localChanges.get();
+        if(changes == null) {
+            changes = new int[3 * Species.COUNT];
+            localChanges.set(changes);
+            synchronized(allChanges) {
+                allChanges.add(changes);
             } 
         } 
-        countsValid = true; 
+        return changes;
+    } 
+
+    /** 
+     * Return the counter for the given species, creating it if necessary.
+     * @param speciesCode The code of the species.
+     * @return The counter for that species.
+     */ 
+    private Counter counterFor(int speciesCode)
+    { 
+        Counter count = counters[speciesCode];
+        if(count == null) {
+            // We do not have a counter for this species yet.
+            // Create one.
+            count = new Counter(Species.getName(speciesCode));
+            counters[speciesCode] = count;
+        } 
+        return count;
     } 
-} 
\ No newline at end of file
+} 
@@ -0,0 +1,133 @@
+
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The test class FieldStatsTest. The counts kept up to date by
+ * FieldStats are checked against a full scan of the field.
+ *
+ * @author David J. Barnes and Michael Kölling
+ * @version 2016.02.29
+ */
+public class FieldStatsTest
+{
+    // The size of the simulated field.
+    private static final int DEPTH = 90;
+    private static final int WIDTH = 70;
+    // The number of steps checked.
+    private static final int STEPS = 25;
+
+    /**
+     * Default constructor for test class FieldStatsTest
+     */
+    public FieldStatsTest()
+    {
+    }
+
+    /**
+     * Sets up the test fixture.
+     *
+     * Called before every test case method.
+     */
+    @BeforeEach
+    public void setUp()
+    {
+    }
+
+    /**
+     * Tears down the test fixture.
+     *
+     * Called after every test case method.
+     */
+    @AfterEach
+    public void tearDown()
+    {
+    }
+
+    @Test
+    public void testCountsMatchScan()
+    {
+        Simulator simulator = new Simulator(DEPTH, WIDTH, true, 11);
+        assertCountsMatchScan(simulator);
+    }
+
+    @Test
+    public void testCountsMatchScanOnThreads()
+    {
+        Simulator simulator = new Simulator(DEPTH, WIDTH, true, 12);
+        simulator.setThreads(4);
+        assertCountsMatchScan(simulator);
+    }
+
+    @Test
+    public void testCountsMatchScanWithLayers()
+    {
+        Simulator simulator = new Simulator(DEPTH, WIDTH, true, 13);
+        simulator.setFireLayer(true);
+        simulator.setGrassLayer(true);
+        assertCountsMatchScan(simulator);
+        simulator.setThreads(3);
+        assertCountsMatchScan(simulator);
+    }
+
+    @Test
+    public void testConcurrentUpdates() throws InterruptedException
+    {
+        FieldStats stats = new FieldStats();
+        stats.incrementCount(Species.DEER);
+        stats.beginConcurrentUpdates();
+        Thread[] threads = new Thread[4];
+        for(int n = 0; n < threads.length; n++) {
+            threads[n] = new Thread(() -> {
+                for(int i = 0; i < 1000; i++) {
+                    stats.incrementCount(Species.DEER);
+                    stats.recordBirth(Species.DEER);
+                }
+                stats.decrementCount(Species.DEER);
+                stats.recordDeath(Species.DEER);
+            });
+            threads[n].start();
+        }
+        for(Thread thread : threads) {
+            thread.join();
+        }
+        stats.endConcurrentUpdates();
+        assertEquals(1 + 4 * 999, stats.getCount(Species.DEER));
+        assertEquals(4000, stats.getBirths(Species.DEER));
+        assertEquals(4, stats.getDeaths(Species.DEER));
+        stats.startStep();
+        assertEquals(0, stats.getTotalBirths());
+        assertEquals(1 + 4 * 999, stats.getCount(Species.DEER));
+    }
+
+    /**
+     * Run steps of a simulation, checking after each that the count of
+     * every species is that found by scanning the field, and that it has
+     * changed by the births less the deaths.
+     */
+    private void assertCountsMatchScan(Simulator simulator)
+    {
+        FieldStats stats = simulator.getStats();
+        int[] counts = new int[Species.COUNT];
+        int[] before = new int[Species.COUNT];
+        for(int step = 0; step < STEPS; step++) {
+            for(int code = 0; code < Species.COUNT; code++) {
+                before[code] = stats.getCount(code);
+            }
+            simulator.simulateOneStep();
+            simulator.getField().countSpecies(counts);
+            for(int code = 0; code < Species.COUNT; code++) {
+                if(code != Species.EMPTY) {
+                    assertEquals(counts[code], stats.getCount(code),
+                                 "Count of species " + code + " at step " + simulator.getStep());
+                    assertEquals(stats.getBirths(code) - stats.getDeaths(code),
+                                 stats.getCount(code) - before[code],
+                                 "Births less deaths of species " + code);
+                }
+            }
+        }
+    }
+}
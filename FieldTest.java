@@ -0,0 +1,245 @@
+
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The test class FieldTest. The free neighbours found from the occupancy
+ * bitboards are checked against a look at every neighbouring location.
+ *
+ * @author David J. Barnes and Michael Kölling
+ * @version 2016.02.29
+ */
+public class FieldTest
+{
+    // The size of the field, which spans several chunks.
+    private static final int DEPTH = 70;
+    private static final int WIDTH = 150;
+    // The size of a field whose last chunks hold a single row and column,
+    // and the rows and columns at the edges of its chunks.
+    private static final int ODD_DEPTH = 65;
+    private static final int ODD_WIDTH = 130;
+    private static final int[] EDGE_ROWS = {0, 1, 62, 63, 64};
+    private static final int[] EDGE_COLS = {0, 1, 62, 63, 64, 65, 126, 127, 128, 129};
+
+    private Field field;
+    private Random rand;
+
+    /**
+     * Default constructor for test class FieldTest
+     */
+    public FieldTest()
+    {
+    }
+
+    /**
+     * Sets up the test fixture.
+     *
+     * Called before every test case method.
+     */
+    @BeforeEach
+    public void setUp()
+    {
+        rand = new RestorableRandom(5);
+        Randomizer.bind(rand);
+        field = new Field(DEPTH, WIDTH);
+    }
+
+    /**
+     * Tears down the test fixture.
+     *
+     * Called after every test case method.
+     */
+    @AfterEach
+    public void tearDown()
+    {
+        Randomizer.unbind();
+    }
+
+    @Test
+    public void testFreeNeighborsOfEmptyField()
+    {
+        assertFreeNeighborsMatchScan();
+    }
+
+    @Test
+    public void testFreeNeighborsOfCrowdedField()
+    {
+        for(double density : new double[] {0.2, 0.6, 0.95, 1.0}) {
+            fill(density);
+            assertFreeNeighborsMatchScan();
+        }
+    }
+
+    @Test
+    public void testFreeNeighborsAfterClearing()
+    {
+        fill(0.9);
+        for(int n = 0; n < DEPTH * WIDTH / 2; n++) {
+            field.clear(rand.nextInt(DEPTH), rand.nextInt(WIDTH));
+        }
+        assertFreeNeighborsMatchScan();
+        field.clear();
+        assertFreeNeighborsMatchScan();
+    }
+
+    @Test
+    public void testChunksOfOddSizedField()
+    {
+        field = new Field(ODD_DEPTH, ODD_WIDTH);
+        assertEquals(2, field.getChunksDown());
+        assertEquals(3, field.getChunksAcross());
+        new Tree(false, field, new Location(ODD_DEPTH - 1, ODD_WIDTH - 1));
+        assertTrue(field.isChunkEmpty(0, 0));
+        assertTrue(field.isChunkEmpty(1, 1));
+        assertFalse(field.isChunkEmpty(1, 2));
+        field.clear(ODD_DEPTH - 1, ODD_WIDTH - 1);
+        assertTrue(field.isChunkEmpty(1, 2));
+    }
+
+    @Test
+    public void testEdgesOfOddSizedField()
+    {
+        field = new Field(ODD_DEPTH, ODD_WIDTH);
+        List<Organism> trees = new ArrayList<>();
+        for(int row : EDGE_ROWS) {
+            for(int col : EDGE_COLS) {
+                if((row + col) % 2 == 0) {
+                    trees.add(new Tree(false, field, new Location(row, col)));
+                }
+                else {
+                    field.placeCode(Species.GRASS, row, col);
+                }
+            }
+        }
+        int cells = EDGE_ROWS.length * EDGE_COLS.length;
+        for(Organism tree : trees) {
+            Location location = tree.getLocation();
+            assertSame(tree, field.getObjectAt(location.getRow(), location.getCol()));
+            assertEquals(Species.TREE, field.getSpeciesAt(location));
+        }
+        int[] counts = new int[Species.COUNT];
+        field.countSpecies(counts);
+        assertEquals(trees.size(), counts[Species.TREE]);
+        assertEquals(cells - trees.size(), counts[Species.GRASS]);
+        assertEquals(trees.size(), field.getStats().getCount(Species.TREE));
+
+        // The codes copied in row order are those at each location, both
+        // for the whole field and chunk by chunk.
+        byte[] codes = new byte[ODD_DEPTH * ODD_WIDTH];
+        field.copyCodes(ByteBuffer.wrap(codes));
+        byte[] chunkCodes = new byte[ODD_DEPTH * ODD_WIDTH];
+        for(int chunk = 0; chunk < field.getChunksDown() * field.getChunksAcross(); chunk++) {
+            field.copyChunkCodes(chunk, chunkCodes);
+        }
+        assertArrayEquals(codes, chunkCodes);
+        for(int row = 0; row < ODD_DEPTH; row++) {
+            for(int col = 0; col < ODD_WIDTH; col++) {
+                assertEquals(field.getSpeciesAt(row, col), codes[row * ODD_WIDTH + col],
+                             "Code at " + row + "," + col);
+            }
+        }
+
+        for(int row : EDGE_ROWS) {
+            for(int col : EDGE_COLS) {
+                field.clear(row, col);
+                assertNull(field.getObjectAt(row, col));
+            }
+        }
+        field.countSpecies(counts);
+        assertEquals(0, counts[Species.TREE] + counts[Species.GRASS]);
+        assertEquals(0, field.getStats().getCount(Species.GRASS));
+    }
+
+    @Test
+    public void testNeighborsAcrossChunkEdges()
+    {
+        field = new Field(ODD_DEPTH, ODD_WIDTH);
+        assertFreeNeighborsMatchScan();
+        for(double density : new double[] {0.3, 0.8}) {
+            fill(density);
+            assertFreeNeighborsMatchScan();
+        }
+        for(int row : EDGE_ROWS) {
+            for(int col : EDGE_COLS) {
+                Set<Integer> expected = new TreeSet<>();
+                for(int r = Math.max(0, row - 1); r <= Math.min(ODD_DEPTH - 1, row + 1); r++) {
+                    for(int c = Math.max(0, col - 1); c <= Math.min(ODD_WIDTH - 1, col + 1); c++) {
+                        if(r != row || c != col) {
+                            expected.add(r * ODD_WIDTH + c);
+                        }
+                    }
+                }
+                assertEquals(expected, cellsOf(field.adjacentCells(row, col)),
+                             "Neighbours of " + row + "," + col);
+            }
+        }
+    }
+
+    /**
+     * Place a species code at each location with the given probability.
+     */
+    private void fill(double density)
+    {
+        for(int row = 0; row < field.getDepth(); row++) {
+            for(int col = 0; col < field.getWidth(); col++) {
+                if(rand.nextDouble() < density) {
+                    field.placeCode(Species.TREE, row, col);
+                }
+            }
+        }
+    }
+
+    /**
+     * Check, at every location, that the free neighbours found by the
+     * field are exactly the empty locations next to it within the grid.
+     */
+    private void assertFreeNeighborsMatchScan()
+    {
+        int depth = field.getDepth();
+        int width = field.getWidth();
+        for(int row = 0; row < depth; row++) {
+            for(int col = 0; col < width; col++) {
+                Set<Integer> expected = new TreeSet<>();
+                for(int r = Math.max(0, row - 1); r <= Math.min(depth - 1, row + 1); r++) {
+                    for(int c = Math.max(0, col - 1); c <= Math.min(width - 1, col + 1); c++) {
+                        if((r != row || c != col) && field.getSpeciesAt(r, c) == Species.EMPTY) {
+                            expected.add(r * width + c);
+                        }
+                    }
+                }
+                Set<Integer> found = cellsOf(field.freeAdjacentCells(row, col));
+                assertEquals(expected, found, "Free neighbours of " + row + "," + col);
+                assertEquals(!expected.isEmpty(), field.hasFreeAdjacentLocation(row, col));
+                int cell = field.freeAdjacentCell(row, col);
+                if(expected.isEmpty()) {
+                    assertEquals(-1, cell);
+                }
+                else {
+                    assertTrue(expected.contains(cell), "Free neighbour of " + row + "," + col);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The index row * width + col of each location of a set of
+     *         neighbours.
+     */
+    private Set<Integer> cellsOf(Neighbors neighbors)
+    {
+        Set<Integer> cells = new TreeSet<>();
+        for(int n = 0; n < neighbors.size(); n++) {
+            cells.add(neighbors.getRow(n) * field.getWidth() + neighbors.getCol(n));
+        }
+        return cells;
+    }
+}
@@ -0,0 +1,23 @@
+/**
+ * Fire simulated as a layer of cells instead of as Fire organisms. Each
+ * burning cell lives exactly as a Fire organism does, so a sequential
+ * simulation with a fire layer follows the same course as one with Fire
+ * organisms; see CellLayer.
+ *
+ * @author David J. Barnes and Michael Kölling
+ * @version 2016.02.29
+ */
+public class FireLayer extends CellLayer
+{
+    /**
+     * Create an empty layer of fire for a field.
+     * @param field The field.
+     * @param species The species of the fire.
+     * @throws IllegalArgumentException If the species' maximum age or
+     *         food value is too large to be held in a byte.
+     */
+    public FireLayer(Field field, Species species)
+    {
+        super(field, species);
+    }
+}
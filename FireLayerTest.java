@@ -0,0 +1,116 @@
+
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.nio.ByteBuffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The test class FireLayerTest. A sequential simulation with a fire
+ * layer must follow the same course as one with Fire organisms.
+ *
+ * @author David J. Barnes and Michael Kölling
+ * @version 2016.02.29
+ */
+public class FireLayerTest
+{
+    // The size of the field.
+    private static final int DEPTH = 110;
+    private static final int WIDTH = 90;
+    // The number of steps compared, by which the fire has burnt out.
+    private static final int STEPS = 60;
+
+    /**
+     * Default constructor for test class FireLayerTest
+     */
+    public FireLayerTest()
+    {
+    }
+
+    /**
+     * Sets up the test fixture.
+     *
+     * Called before every test case method.
+     */
+    @BeforeEach
+    public void setUp()
+    {
+    }
+
+    /**
+     * Tears down the test fixture.
+     *
+     * Called after every test case method.
+     */
+    @AfterEach
+    public void tearDown()
+    {
+    }
+
+    @Test
+    public void testSameCourseAsOrganisms()
+    {
+        for(long seed = 40; seed < 43; seed++) {
+            assertSameCourse(seed, Parameters.defaults());
+        }
+    }
+
+    @Test
+    public void testSameCourseWhenFireEats()
+    {
+        Parameters parameters = Parameters.defaults().with("fire.eats.tree", "0.5")
+                                                     .with("fire.eats.grass", "1.0");
+        assertSameCourse(43, parameters);
+    }
+
+    @Test
+    public void testLayerMatchesField()
+    {
+        Simulator simulator = new Simulator(DEPTH, WIDTH, true, 44);
+        simulator.setFireLayer(true);
+        SpeciesLayer layer = simulator.getField().getLayer(Species.FIRE);
+        for(int step = 0; step < STEPS; step++) {
+            simulator.simulateOneStep();
+            int[] cells = layer.getCells();
+            assertEquals(layer.size(), cells.length);
+            assertEquals(simulator.getStats().getCount(Species.FIRE), cells.length);
+            for(int cell : cells) {
+                assertEquals(Species.FIRE, simulator.getField().getSpeciesAt(cell / WIDTH,
+                                                                             cell % WIDTH));
+            }
+        }
+    }
+
+    /**
+     * Run a seeded field once with Fire organisms and once with a fire
+     * layer, and check that the counts and the field agree after every step.
+     */
+    private void assertSameCourse(long seed, Parameters parameters)
+    {
+        Simulator organisms = new Simulator(DEPTH, WIDTH, true, seed, parameters);
+        Simulator layered = new Simulator(DEPTH, WIDTH, true, seed, parameters);
+        layered.setFireLayer(true);
+        for(int step = 1; step <= STEPS; step++) {
+            organisms.simulateOneStep();
+            layered.simulateOneStep();
+            for(int code = 0; code < Species.COUNT; code++) {
+                assertEquals(organisms.getStats().getCount(code),
+                             layered.getStats().getCount(code),
+                             "Count of species " + code + " at step " + step + ", seed " + seed);
+            }
+            assertArrayEquals(codesOf(organisms), codesOf(layered),
+                              "Field at step " + step + ", seed " + seed);
+        }
+    }
+
+    /**
+     * @return The species code of every location of a simulation's field.
+     */
+    private byte[] codesOf(Simulator simulator)
+    {
+        byte[] codes = new byte[DEPTH * WIDTH];
+        simulator.getField().copyCodes(ByteBuffer.wrap(codes));
+        return codes;
+    }
+}
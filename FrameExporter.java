@@ -0,0 +1,297 @@
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.ImageIO;
+
+/**
+ * An observer that records the field as a sequence of pictures, with
+ * one pixel per location, without needing a display. Frames are written
+ * either as numbered PNG files in a directory or as a stream of raw RGB
+ * images, three bytes per pixel, that can be piped to a video encoder
+ * such as "ffmpeg -f rawvideo -pix_fmt rgb24 -s WIDTHxDEPTH -i -".
+ *
+ * Only every n-th step is recorded. The simulation thread only copies
+ * the species codes of the field; the pictures are made and written by
+ * a pool of background threads. At most QUEUE_CAPACITY frames can be
+ * waiting at once, and a frame that would exceed that is dropped rather
+ * than keeping the simulation waiting. Raw frames are written in step
+ * order; PNG files may be written in any order.
+ *
+ * @author David J. Barnes and Michael Kölling
+ * @version 2016.02.29
+ */
+public class FrameExporter implements SimulatorObserver
+{
+    // The most frames that can be waiting to be written.
+    public static final int QUEUE_CAPACITY = 16;
+
+    // The directory for PNG files, or null for a raw stream.
+    private final Path directory;
+    // The raw stream, or null for PNG files.
+    private final OutputStream stream;
+    // Record every this many steps.
+    private final int every;
+    // The colors for each species.
+    private final Palette palette;
+    // The threads that make and write the pictures.
+    private final ExecutorService encoders;
+    // The thread that writes raw frames in order, or null for PNG files.
+    private final ExecutorService writer;
+    // Arrays of codes that are not in use by a waiting frame.
+    private final BlockingQueue<byte[]> freeCodes;
+    // The number of arrays of codes made so far.
+    private int codesMade;
+    // Completes when the last raw frame queued has been written.
+    private CompletableFuture<Void> lastWrite;
+    // The number of frames written and dropped.
+    private final AtomicInteger written;
+    private int dropped;
+    // Any failure to write a frame, reported by close.
+    private volatile IOException failure;
+    // Whether close has been called.
+    private boolean closed;
+
+    /**
+     * Create an exporter.
+     */
+    private FrameExporter(Path directory, OutputStream stream, int every, int threads)
+    {
+        if(every < 1 || threads < 1) {
+            throw new IllegalArgumentException("every and threads must be at least 1");
+        }
+        this.directory = directory;
+        this.stream = stream;
+        this.every = every;
+        palette = new Palette();
+        encoders = Executors.newFixedThreadPool(threads, task -> daemon(task, "frame-encoder"));
+        writer = stream == null ? null
+                 : Executors.newSingleThreadExecutor(task -> daemon(task, "frame-writer"));
+        freeCodes = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        lastWrite = CompletableFuture.completedFuture(null);
+        written = new AtomicInteger();
+    }
+
+    /**
+     * Create an exporter that writes each recorded step to a PNG file
+     * named frame-NNNNNN.png, NNNNNN being the step number.
+     * @param directory The directory for the files. It is created if necessary.
+     * @param every Record every this many steps; 1 to record every step.
+     * @param threads The number of threads making the files.
+     * @return The exporter.
+     * @throws IOException If the directory cannot be created.
+     */
+    public static FrameExporter toPngFiles(Path directory, int every, int threads)
+        throws IOException
+    {
+        Files.createDirectories(directory);
+        return new FrameExporter(directory, null, every, threads);
+    }
+
+    /**
+     * Create an exporter that writes each recorded step to a stream as a
+     * raw image of depth rows of width pixels, each pixel being its red,
+     * green and blue bytes.
+     * @param stream The stream. It is closed by close.
+     * @param every Record every this many steps; 1 to record every step.
+     * @param threads The number of threads making the images.
+     * @return The exporter.
+     */
+    public static FrameExporter toRawStream(OutputStream stream, int every, int threads)
+    {
+        return new FrameExporter(null, stream, every, threads);
+    }
+
+    /**
+     * Define a color to be used for a given class of organism.
+     * @param organismClass The organism's Class object.
+     * @param color The color to be used for the given class.
+     */
+    public void setColor(Class<? extends Organism> organismClass, Color color)
+    {
+        palette.setColor(organismClass, color);
+    }
+
+    /**
+     * Queue a frame of the field if this step is to be recorded and
+     * there is room for it.
+     * @param step The step just run.
+     * @param field The field being simulated.
+     * @param stats Statistics on the population of the field.
+     */
+    public void showStatus(int step, Field field, FieldStats stats)
+    {
+        if(closed || step % every != 0) {
+            return;
+        }
+        int depth = field.getDepth();
+        int width = field.getWidth();
+        byte[] codes = freeCodes.poll();
+        if(codes == null && codesMade < QUEUE_CAPACITY) {
+            codesMade++;
+            codes = new byte[depth * width];
+        }
+        if(codes == null || codes.length != depth * width) {
+            dropped++;
+            return;
+        }
+        field.copyCodes(ByteBuffer.wrap(codes));
+        byte[] frameCodes = codes;
+        int[] colors = palette.getColors().clone();
+
+        if(stream == null) {
+            CompletableFuture.runAsync(() -> writePng(step, frameCodes, depth, width, colors),
+                                       encoders)
+                             .whenComplete((result, e) -> finish(frameCodes, e));
+        }
+        else {
+            CompletableFuture<byte[]> rgb = CompletableFuture.supplyAsync(
+                () -> toRgb(frameCodes, colors), encoders);
+            lastWrite = lastWrite.thenCombineAsync(rgb, this::writeRaw, writer)
+                                 .whenComplete((result, e) -> finish(frameCodes, e));
+        }
+    }
+
+    /**
+     * @return The number of frames written so far.
+     */
+    public int getWrittenFrames()
+    {
+        return written.get();
+    }
+
+    /**
+     * @return The number of frames dropped because too many were waiting.
+     */
+    public int getDroppedFrames()
+    {
+        return dropped;
+    }
+
+    /**
+     * Write every waiting frame, stop the background threads and close
+     * the stream, if any. The exporter should first be removed from the
+     * simulation's observers.
+     * @throws IOException If any frame could not be written.
+     */
+    public void close() throws IOException
+    {
+        if(closed) {
+            return;
+        }
+        closed = true;
+        encoders.shutdown();
+        try {
+            encoders.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            if(writer != null) {
+                try {
+                    lastWrite.join();
+                }
+                catch(CompletionException e) {
+                    // Already recorded by finish.
+                }
+                writer.shutdown();
+                stream.close();
+            }
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing frame exporter", e);
+        }
+        if(failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Make a picture of a frame and write it to its PNG file.
+     */
+    private void writePng(int step, byte[] codes, int depth, int width, int[] colors)
+    {
+        BufferedImage image = new BufferedImage(width, depth, BufferedImage.TYPE_INT_RGB);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        for(int index = 0; index < codes.length; index++) {
+            pixels[index] = colors[codes[index]];
+        }
+        Path file = directory.resolve(String.format("frame-%06d.png", step));
+        try {
+            if(!ImageIO.write(image, "png", file.toFile())) {
+                throw new IOException("No PNG writer available");
+            }
+        }
+        catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return The raw RGB bytes of a frame.
+     */
+    private static byte[] toRgb(byte[] codes, int[] colors)
+    {
+        byte[] rgb = new byte[3 * codes.length];
+        for(int index = 0; index < codes.length; index++) {
+            int color = colors[codes[index]];
+            rgb[3 * index] = (byte) (color >> 16);
+            rgb[3 * index + 1] = (byte) (color >> 8);
+            rgb[3 * index + 2] = (byte) color;
+        }
+        return rgb;
+    }
+
+    /**
+     * Write a raw frame to the stream, once the previous one is written.
+     */
+    private Void writeRaw(Void previous, byte[] rgb)
+    {
+        try {
+            stream.write(rgb);
+            return null;
+        }
+        catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Make a frame's codes available again, and count the frame as
+     * written or record its failure.
+     */
+    private void finish(byte[] codes, Throwable e)
+    {
+        if(e == null) {
+            written.incrementAndGet();
+        }
+        else if(failure == null) {
+            Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+            failure = cause instanceof UncheckedIOException
+                      ? ((UncheckedIOException) cause).getCause()
+                      : new IOException("Could not write frame", cause);
+        }
+        freeCodes.offer(codes);
+    }
+
+    /**
+     * Create a daemon thread, so that a forgotten exporter does not keep
+     * the program running.
+     */
+    private static Thread daemon(Runnable task, String name)
+    {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -0,0 +1,193 @@
+
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The test class FrameExporterTest. Frames are exported without a
+ * display, and a writer that falls behind must make the exporter drop
+ * frames rather than keep the simulation waiting.
+ *
+ * @author David J. Barnes and Michael Kölling
+ * @version 2016.02.29
+ */
+public class FrameExporterTest
+{
+    // The size of the field.
+    private static final int DEPTH = 30;
+    private static final int WIDTH = 40;
+    // The number of steps shown to the exporter.
+    private static final int STEPS = 20;
+    // The bytes of a raw frame.
+    private static final int FRAME_SIZE = 3 * DEPTH * WIDTH;
+    // The colors of empty locations and of deer, as RGB.
+    private static final int EMPTY_RGB = Color.WHITE.getRGB() & 0xFFFFFF;
+    private static final int DEER_RGB = Color.ORANGE.getRGB() & 0xFFFFFF;
+
+    private Field field;
+    private Path directory;
+
+    /**
+     * Default constructor for test class FrameExporterTest
+     */
+    public FrameExporterTest()
+    {
+    }
+
+    /**
+     * Sets up the test fixture.
+     *
+     * Called before every test case method.
+     */
+    @BeforeEach
+    public void setUp() throws IOException
+    {
+        field = new Field(DEPTH, WIDTH);
+        directory = Files.createTempDirectory("frames");
+    }
+
+    /**
+     * Tears down the test fixture.
+     *
+     * Called after every test case method.
+     */
+    @AfterEach
+    public void tearDown() throws IOException
+    {
+        for(Path file : list(directory)) {
+            Files.delete(file);
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void testPngFiles() throws IOException
+    {
+        FrameExporter exporter = FrameExporter.toPngFiles(directory, 3, 2);
+        exporter.setColor(Deer.class, Color.ORANGE);
+        for(int step = 1; step <= STEPS; step++) {
+            field.placeCode(Species.DEER, step, step);
+            exporter.showStatus(step, field, field.getStats());
+        }
+        exporter.close();
+
+        assertEquals(6, exporter.getWrittenFrames());
+        assertEquals(0, exporter.getDroppedFrames());
+        List<Path> files = list(directory);
+        assertEquals(6, files.size());
+        for(int n = 0; n < files.size(); n++) {
+            int step = 3 * (n + 1);
+            assertEquals(String.format("frame-%06d.png", step),
+                         files.get(n).getFileName().toString());
+            BufferedImage image = ImageIO.read(files.get(n).toFile());
+            assertEquals(WIDTH, image.getWidth());
+            assertEquals(DEPTH, image.getHeight());
+            // The deer placed up to this step, and none after it.
+            assertEquals(DEER_RGB, image.getRGB(step, step) & 0xFFFFFF);
+            assertEquals(DEER_RGB, image.getRGB(1, 1) & 0xFFFFFF);
+            assertEquals(EMPTY_RGB, image.getRGB(step + 1, step + 1) & 0xFFFFFF);
+        }
+    }
+
+    @Test
+    public void testRawStream() throws IOException
+    {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        FrameExporter exporter = FrameExporter.toRawStream(stream, 2, 3);
+        exporter.setColor(Deer.class, Color.ORANGE);
+        for(int step = 1; step <= STEPS; step++) {
+            field.clear();
+            field.placeCode(Species.DEER, step, step);
+            exporter.showStatus(step, field, field.getStats());
+        }
+        exporter.close();
+
+        assertEquals(STEPS / 2, exporter.getWrittenFrames());
+        byte[] frames = stream.toByteArray();
+        assertEquals(STEPS / 2 * FRAME_SIZE, frames.length);
+        // The frames are in step order, each with only its step's deer.
+        for(int n = 0; n < STEPS / 2; n++) {
+            int step = 2 * (n + 1);
+            assertEquals(DEER_RGB, rgbAt(frames, n, step, step), "Frame of step " + step);
+            assertEquals(EMPTY_RGB, rgbAt(frames, n, step - 1, step - 1));
+        }
+    }
+
+    @Test
+    public void testFramesDroppedWhenWriterFallsBehind() throws IOException
+    {
+        CountDownLatch release = new CountDownLatch(1);
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        OutputStream blocked = new OutputStream() {
+            public void write(int b)
+            {
+                write(new byte[] {(byte) b}, 0, 1);
+            }
+
+            public void write(byte[] bytes, int offset, int length)
+            {
+                try {
+                    release.await();
+                }
+                catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                written.write(bytes, offset, length);
+            }
+        };
+        FrameExporter exporter = FrameExporter.toRawStream(blocked, 1, 2);
+        int steps = 3 * FrameExporter.QUEUE_CAPACITY;
+        for(int step = 1; step <= steps; step++) {
+            exporter.showStatus(step, field, field.getStats());
+        }
+        // Nothing has been written, so every frame after the first
+        // QUEUE_CAPACITY was dropped without waiting.
+        assertEquals(steps - FrameExporter.QUEUE_CAPACITY, exporter.getDroppedFrames());
+
+        release.countDown();
+        exporter.close();
+        assertEquals(FrameExporter.QUEUE_CAPACITY, exporter.getWrittenFrames());
+        assertEquals(FrameExporter.QUEUE_CAPACITY * FRAME_SIZE, written.size());
+    }
+
+    @Test
+    public void testInvalidDecimation()
+    {
+        assertThrows(IllegalArgumentException.class,
+                     () -> FrameExporter.toRawStream(new ByteArrayOutputStream(), 0, 1));
+    }
+
+    /**
+     * @return The RGB color of a location in a frame of a raw stream.
+     */
+    private static int rgbAt(byte[] frames, int frame, int row, int col)
+    {
+        int offset = frame * FRAME_SIZE + 3 * (row * WIDTH + col);
+        return (frames[offset] & 0xFF) << 16 | (frames[offset + 1] & 0xFF) << 8
+               | (frames[offset + 2] & 0xFF);
+    }
+
+    /**
+     * @return The files in a directory, in name order.
+     */
+    private static List<Path> list(Path directory) throws IOException
+    {
+        try(Stream<Path> files = Files.list(directory)) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,32 @@
+/**
+ * Grass simulated as a layer of cells instead of as Grass organisms.
+ * Grass is the most numerous species, so this takes the largest
+ * population of objects off the heap and out of the simulator's lists.
+ *
+ * Each cell of grass lives exactly as a Grass organism does: it ages,
+ * breeds, and moves to a free location next to it or dies of
+ * overcrowding, and the cells act in the order a list of Grass organisms
+ * would. A sequential simulation with a grass layer therefore follows
+ * the same course as one with Grass organisms; see CellLayer.
+ *
+ * Grazers find the grass through the species codes in the field, and eat
+ * it with remove, which is safe to call from the threads of a
+ * TiledStepEngine.
+ *
+ * @author David J. Barnes and Michael Kölling
+ * @version 2016.02.29
+ */
+public class GrassLayer extends CellLayer
+{
+    /**
+     * Create an empty layer of grass for a field.
+     * @param field The field.
+     * @param species The species of the grass.
+     * @throws IllegalArgumentException If the species' maximum age is too
+     *         large to be held in a byte.
+     */
+    public GrassLayer(Field field, Species species)
+    {
+        super(field, species);
+    }
+}
@@ -0,0 +1,133 @@
+
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.nio.ByteBuffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The test class GrassLayerTest. A sequential simulation with a grass
+ * layer must follow the same course as one with Grass organisms.
+ *
+ * @author David J. Barnes and Michael Kölling
+ * @version 2016.02.29
+ */
+public class GrassLayerTest
+{
+    // The size of the field.
+    private static final int DEPTH = 110;
+    private static final int WIDTH = 90;
+    // The number of steps compared.
+    private static final int STEPS = 50;
+
+    /**
+     * Default constructor for test class GrassLayerTest
+     */
+    public GrassLayerTest()
+    {
+    }
+
+    /**
+     * Sets up the test fixture.
+     *
+     * Called before every test case method.
+     */
+    @BeforeEach
+    public void setUp()
+    {
+    }
+
+    /**
+     * Tears down the test fixture.
+     *
+     * Called after every test case method.
+     */
+    @AfterEach
+    public void tearDown()
+    {
+    }
+
+    @Test
+    public void testSameCourseAsOrganisms()
+    {
+        for(long seed = 40; seed < 43; seed++) {
+            assertSameCourse(seed, Parameters.defaults());
+        }
+    }
+
+    @Test
+    public void testSameCourseWhenEaten()
+    {
+        Parameters parameters = Parameters.defaults().with("deer.creationProbability", "0.1")
+                                                     .with("fire.eats.grass", "1.0");
+        assertSameCourse(43, parameters);
+    }
+
+    @Test
+    public void testSameCourseWithFireLayer()
+    {
+        Simulator organisms = new Simulator(DEPTH, WIDTH, true, 45);
+        Simulator layered = new Simulator(DEPTH, WIDTH, true, 45);
+        layered.setGrassLayer(true);
+        layered.setFireLayer(true);
+        for(int step = 1; step <= STEPS; step++) {
+            organisms.simulateOneStep();
+            layered.simulateOneStep();
+            assertArrayEquals(codesOf(organisms), codesOf(layered), "Field at step " + step);
+        }
+    }
+
+    @Test
+    public void testLayerMatchesFieldOnThreads()
+    {
+        // Deer eat the grass from the engine's threads.
+        Simulator simulator = new Simulator(DEPTH, WIDTH, true, 44);
+        simulator.setGrassLayer(true);
+        simulator.setThreads(4);
+        SpeciesLayer layer = simulator.getField().getLayer(Species.GRASS);
+        for(int step = 0; step < STEPS; step++) {
+            simulator.simulateOneStep();
+            int[] cells = layer.getCells();
+            assertEquals(layer.size(), cells.length);
+            assertEquals(simulator.getStats().getCount(Species.GRASS), cells.length);
+            for(int cell : cells) {
+                assertEquals(Species.GRASS, simulator.getField().getSpeciesAt(cell / WIDTH,
+                                                                              cell % WIDTH));
+            }
+        }
+        simulator.setThreads(1);
+    }
+
+    /**
+     * Run a seeded field once with Grass organisms and once with a grass
+     * layer, and check that the counts and the field agree after every step.
+     */
+    private void assertSameCourse(long seed, Parameters parameters)
+    {
+        Simulator organisms = new Simulator(DEPTH, WIDTH, true, seed, parameters);
+        Simulator layered = new Simulator(DEPTH, WIDTH, true, seed, parameters);
+        layered.setGrassLayer(true);
+        for(int step = 1; step <= STEPS; step++) {
+            organisms.simulateOneStep();
+            layered.simulateOneStep();
+            for(int code = 0; code < Species.COUNT; code++) {
+                assertEquals(organisms.getStats().getCount(code),
+                             layered.getStats().getCount(code),
+                             "Count of species " + code + " at step " + step + ", seed " + seed);
+            }
+            assertArrayEquals(codesOf(organisms), codesOf(layered),
+                              "Field at step " + step + ", seed " + seed);
+        }
+    }
+
+    /**
+     * @return The species code of every location of a simulation's field.
+     */
+    private byte[] codesOf(Simulator simulator)
+    {
+        byte[] codes = new byte[DEPTH * WIDTH];
+        simulator.getField().copyCodes(ByteBuffer.wrap(codes));
+        return codes;
+    }
+}
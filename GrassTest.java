@@ -1,6 +1,8 @@
 
 
 import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -28,6 +30,7 @@ public class GrassTest
     @BeforeEach
     public void setUp()
     {
+        Randomizer.bind(new RestorableRandom(Randomizer.getSeed()));
     }
 
     /**
@@ -38,11 +41,26 @@ public class GrassTest
     @AfterEach
     public void tearDown()
     {
+        Randomizer.unbind();
     }
 
     @Test
     public void testGrassSpawn()
     {
+        Field field = new Field(7, 7);
+        Grass grass = new Grass(false, field, new Location(3, 3));
+        List<Organism> newborns = new ArrayList<>();
+        int maxAge = Species.get(Species.GRASS).getMaxAge();
+        for(int step = 0; step < maxAge && newborns.isEmpty(); step++) {
+            grass.act(newborns);
+        }
+        assertFalse(newborns.isEmpty());
+        assertTrue(grass.getAge() >= Species.get(Species.GRASS).getBreedingAge());
+        for(Organism newborn : newborns) {
+            assertTrue(newborn instanceof Grass);
+            assertSame(newborn, field.getObjectAt(newborn.getLocation()));
+        }
+        assertEquals(newborns.size() + 1, field.getStats().getCount(Species.GRASS));
     }
 }
 
@@ -0,0 +1,130 @@
+import java.util.Random;
+
+/**
+ * The result of a neighbour query on a field: the row and column of up
+ * to eight locations adjacent to a given one, in random order.
+ *
+ * Instances are reused. Each thread has its own scratch Neighbors object
+ * that the field fills on every query, so the contents are only valid
+ * until the next neighbour query made on the same thread. Call
+ * getLocation to obtain a Location that can be kept.
+ *
+ * @author David J. Barnes and Michael Kölling
+ * @version 2016.02.29
+ */
+public class Neighbors
+{
+    // The largest possible number of neighbours.
+    private static final int MAX_NEIGHBORS = 8;
+
+    // Row and column of each neighbour.
+    private int[] rows;
+    private int[] cols;
+    // How many neighbours are currently held.
+    private int size;
+
+    /**
+     * Create an empty set of neighbours.
+     */
+    public Neighbors()
+    {
+        rows = new int[MAX_NEIGHBORS];
+        cols = new int[MAX_NEIGHBORS];
+        size = 0;
+    }
+
+    /**
+     * @return The number of neighbours held.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return The row of the neighbour at the given position.
+     */
+    public int getRow(int index)
+    {
+        return rows[index];
+    }
+
+    /**
+     * @return The column of the neighbour at the given position.
+     */
+    public int getCol(int index)
+    {
+        return cols[index];
+    }
+
+    /**
+     * Return a new Location for the neighbour at the given position.
+     * @param index The position of the neighbour, less than size().
+     * @return The neighbour's location.
+     */
+    public Location getLocation(int index)
+    {
+        return new Location(rows[index], cols[index]);
+    }
+
+    /**
+     * Remove all neighbours.
+     */
+    void clear()
+    {
+        size = 0;
+    }
+
+    /**
+     * Append a neighbour.
+     * @param row The neighbour's row.
+     * @param col The neighbour's column.
+     */
+    void add(int row, int col)
+    {
+        rows[size] = row;
+        cols[size] = col;
+        size++;
+    }
+
+    /**
+     * Overwrite the neighbour at the given position.
+     */
+    void set(int index, int row, int col)
+    {
+        rows[index] = row;
+        cols[index] = col;
+    }
+
+    /**
+     * Keep only the first newSize neighbours.
+     */
+    void truncate(int newSize)
+    {
+        size = newSize;
+    }
+
+    /**
+     * Put the neighbours in random order. For the neighbours held, this
+     * draws the same numbers, and makes the same swaps, as
+     * Collections.shuffle would for a list of them in the same order.
+     * That is all that is preserved: seeded runs do not follow the
+     * course they took before the bitboards, because a query for free
+     * neighbours shuffles only the free ones, and Field.freeAdjacentCell
+     * picks a neighbour with a single nextInt over a count of the free
+     * ones rather than shuffling.
+     * @param rand The random generator to use.
+     */
+    void shuffle(Random rand)
+    {
+        for(int i = size; i > 1; i--) {
+            int j = rand.nextInt(i);
+            int row = rows[i - 1];
+            int col = cols[i - 1];
+            rows[i - 1] = rows[j];
+            cols[i - 1] = cols[j];
+            rows[j] = row;
+            cols[j] = col;
+        }
+    }
+}
@@ -0,0 +1,306 @@
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A model of a single organism. Organisms age, breed, move, and die;
+ * some also get hungry and eat other organisms next to them.
+ *
+ * How an organism lives is governed entirely by its Species: the ages at
+ * which it breeds and dies, how often it breeds, how long a meal lasts,
+ * and the table of what it eats. The behaviour itself is the same for
+ * every organism, so act is final and a loop over the organisms of one
+ * species always runs the same code.
+ *
+ * @author David J. Barnes and Michael Kölling
+ * @version 2016.02.29
+ */
+public abstract class Organism
+{
+    // The species this organism belongs to.
+    private final Species species;
+    // The organism's age.
+    private int age;
+    // Whether the organism is alive or not.
+    private boolean alive;
+    // The organism's position.
+    private Location location;
+    // The field occupied.
+    private Field field;
+    // The organism's food level, which is increased by eating.
+    private int foodLevel;
+
+    /**
+     * Create an organism. An organism can be created as a new born (age
+     * zero) or with a random age. If its species needs food, it starts
+     * with a random food level.
+     *
+     * @param species The species of the organism.
+     * @param randomAge If true, the organism will have a random age.
+     * @param field The field currently occupied.
+     * @param location The location within the field.
+     */
+    protected Organism(Species species, boolean randomAge, Field field, Location location)
+    {
+        this.species = species;
+        reinitialize(randomAge, field, location);
+    }
+
+    /**
+     * Bring the organism to life again as if it had just been created,
+     * so that a dead organism can be reused for a birth. Called by the
+     * constructor and by OrganismPool.
+     *
+     * @param randomAge If true, the organism will have a random age.
+     * @param field The field to occupy.
+     * @param location The location within the field.
+     */
+    final void reinitialize(boolean randomAge, Field field, Location location)
+    {
+        age = 0;
+        alive = true;
+        this.field = field;
+        this.location = null;
+        setLocation(location);
+        Random rand = Randomizer.getRandom();
+        if(randomAge) {
+            age = rand.nextInt(species.getMaxAge());
+        }
+        foodLevel = 0;
+        if(species.needsFood()) {
+            foodLevel = rand.nextInt(species.getFoodValue());
+        }
+    }
+
+    /**
+     * This is what the organism does every step: it ages and may get
+     * hungry, breeds, then moves towards food if it eats and some is
+     * next to it, or otherwise to a free location. If it cannot move,
+     * it dies of overcrowding.
+     * @param newborns A list to return newly born organisms.
+     */
+    public final void act(List<Organism> newborns)
+    {
+        incrementAge();
+        if(species.needsFood()) {
+            incrementHunger();
+        }
+        if(alive) {
+            giveBirth(newborns);
+            // Move towards a source of food if found.
+            Location newLocation = null;
+            if(species.needsFood()) {
+                newLocation = findFood();
+            }
+            if(newLocation == null) {
+                // No food found - try to move to a free location.
+                newLocation = field.freeAdjacentLocation(location);
+            }
+            // See if it was possible to move.
+            if(newLocation != null) {
+                setLocation(newLocation);
+            }
+            else {
+                // Overcrowding.
+                setDead();
+            }
+        }
+    }
+
+    /**
+     * Check whether the organism is alive or not.
+     * @return True if the organism is still alive.
+     */
+    public boolean isAlive()
+    {
+        return alive;
+    }
+
+    /**
+     * Indicate that the organism is no longer alive.
+     * It is removed from the field.
+     */
+    public void setDead()
+    {
+        alive = false;
+        if(location != null) {
+            field.clear(location);
+            field.getStats().recordDeath(species.getCode());
+            location = null;
+            field = null;
+        }
+    }
+
+    /**
+     * @return The organism's age.
+     */
+    public int getAge()
+    {
+        return age;
+    }
+
+    /**
+     * @return The organism's food level; always 0 if it never eats.
+     */
+    public int getFoodLevel()
+    {
+        return foodLevel;
+    }
+
+    /**
+     * Set the age and food level of the organism, as when it is
+     * restored from a checkpoint.
+     * @param age The organism's age.
+     * @param foodLevel The organism's food level.
+     */
+    void restore(int age, int foodLevel)
+    {
+        this.age = age;
+        this.foodLevel = foodLevel;
+    }
+
+    /**
+     * Return the organism's location.
+     * @return The organism's location.
+     */
+    public Location getLocation()
+    {
+        return location;
+    }
+
+    /**
+     * @return The species this organism belongs to.
+     */
+    public Species getSpecies()
+    {
+        return species;
+    }
+
+    /**
+     * @return The code of this organism's species.
+     */
+    public byte getSpeciesCode()
+    {
+        return species.getCode();
+    }
+
+    /**
+     * Place the organism at the new location in the given field.
+     * @param newLocation The organism's new location.
+     */
+    private void setLocation(Location newLocation)
+    {
+        if(location != null) {
+            field.clear(location);
+        }
+        location = newLocation;
+        field.place(this, newLocation);
+    }
+
+    /**
+     * Increase the age. This could result in the organism's death.
+     */
+    private void incrementAge()
+    {
+        age++;
+        if(age > species.getMaxAge()) {
+            setDead();
+        }
+    }
+
+    /**
+     * Make this organism hungry. This could result in its death.
+     */
+    private void incrementHunger()
+    {
+        foodLevel--;
+        if(foodLevel <= 0) {
+            setDead();
+        }
+    }
+
+    /**
+     * Look for something this organism eats in the adjacent locations.
+     * Each live prey is tried in turn, and eaten with the likelihood its
+     * species' table gives; only the first meal is taken. Prey simulated
+     * by a SpeciesLayer is eaten by removing its cell from the layer.
+     * @return Where food was eaten, or null if it wasn't.
+     */
+    private Location findFood()
+    {
+        Neighbors adjacent = field.adjacentCells(location);
+        for(int n = 0; n < adjacent.size(); n++) {
+            int row = adjacent.getRow(n);
+            int col = adjacent.getCol(n);
+            byte prey = field.getSpeciesAt(row, col);
+            if(species.eats(prey)) {
+                Organism food = (Organism) field.getObjectAt(row, col);
+                if((food == null || food.isAlive())
+                   && mealSucceeds(species.getMealProbability(prey))) {
+                    if(food == null) {
+                        field.getLayer(prey).remove(row, col);
+                    }
+                    else {
+                        food.setDead();
+                    }
+                    foodLevel = species.getFoodValue();
+                    return adjacent.getLocation(n);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Decide whether an attempt to eat succeeds. A certain meal does not
+     * use a random number.
+     * @param probability The likelihood of success.
+     * @return true if the meal is eaten.
+     */
+    private boolean mealSucceeds(double probability)
+    {
+        return probability >= 1.0 || Randomizer.getRandom().nextDouble() <= probability;
+    }
+
+    /**
+     * Check whether or not this organism is to give birth at this step.
+     * New births will be made into free adjacent locations.
+     * @param newborns A list to return newly born organisms.
+     */
+    private void giveBirth(List<Organism> newborns)
+    {
+        // New organisms are born into adjacent locations.
+        // Get a list of adjacent free locations.
+        Neighbors free = field.freeAdjacentCells(location);
+        int births = breed();
+        for(int b = 0; b < births && b < free.size(); b++) {
+            Location loc = free.getLocation(b);
+            Organism young = field.getPool().acquire(species, species.newbornsHaveRandomAge(),
+                                                     field, loc);
+            field.getStats().recordBirth(species.getCode());
+            newborns.add(young);
+        }
+    }
+
+    /**
+     * Generate a number representing the number of births,
+     * if it can breed.
+     * @return The number of births (may be zero).
+     */
+    private int breed()
+    {
+        Random rand = Randomizer.getRandom();
+        int births = 0;
+        if(canBreed() && rand.nextDouble() <= species.getBreedingProbability()) {
+            births = rand.nextInt(species.getMaxLitterSize()) + 1;
+        }
+        return births;
+    }
+
+    /**
+     * An organism can breed if it has reached the breeding age.
+     */
+    private boolean canBreed()
+    {
+        return age >= species.getBreedingAge();
+    }
+}
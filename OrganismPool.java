@@ -0,0 +1,182 @@
+import java.util.Arrays;
+
+/**
+ * Keeps dead organisms so that they can be brought back to life as
+ * newborns, instead of a new object being allocated for every birth.
+ * There is one pool per field, with a stack of free organisms for each
+ * species, and the pool counts how many requests it could satisfy.
+ *
+ * An organism may only be released once nothing refers to it any more,
+ * which is when it is dropped from its species' list.
+ *
+ * While the field is being updated from several threads at once, the
+ * stacks are shared under a lock.
+ *
+ * @author David J. Barnes and Michael Kölling
+ * @version 2016.02.29
+ */
+public class OrganismPool
+{
+    // The capacity first given to each species' stack.
+    private static final int INITIAL_CAPACITY = 16;
+
+    // The free organisms of each species, indexed by species code.
+    private Organism[][] free;
+    // How many free organisms each species' stack holds.
+    private int[] freeCount;
+    // How many requests of each species were met from the pool.
+    private long[] hits;
+    // How many requests of each species needed a new object.
+    private long[] misses;
+    // Whether the field is currently being updated from several threads.
+    private boolean concurrent;
+
+    /**
+     * Create an empty pool.
+     */
+    public OrganismPool()
+    {
+        free = new Organism[Species.COUNT][];
+        freeCount = new int[Species.COUNT];
+        hits = new long[Species.COUNT];
+        misses = new long[Species.COUNT];
+    }
+
+    /**
+     * Return an organism of the given species, placed at the given
+     * location. A free organism is reinitialized if there is one;
+     * otherwise a new one is created.
+     * @param species The species of the organism.
+     * @param randomAge If true, the organism will have a random age.
+     * @param field The field to occupy.
+     * @param location The location within the field.
+     * @return The organism.
+     */
+    public Organism acquire(Species species, boolean randomAge, Field field, Location location)
+    {
+        Organism organism;
+        if(concurrent) {
+            synchronized(this) {
+                organism = take(species.getCode());
+            }
+        }
+        else {
+            organism = take(species.getCode());
+        }
+        if(organism == null) {
+            return species.create(randomAge, field, location);
+        }
+        organism.reinitialize(randomAge, field, location);
+        return organism;
+    }
+
+    /**
+     * Keep an organism for reuse. Nothing else may refer to it.
+     * @param organism The organism, which should be dead.
+     */
+    public void release(Organism organism)
+    {
+        if(concurrent) {
+            synchronized(this) {
+                put(organism);
+            }
+        }
+        else {
+            put(organism);
+        }
+    }
+
+    /**
+     * Prepare for the pool to be used from several threads at once.
+     */
+    public void beginConcurrentUpdates()
+    {
+        concurrent = true;
+    }
+
+    /**
+     * Return to use from a single thread. This must be called once all
+     * the threads using the pool have finished.
+     */
+    public synchronized void endConcurrentUpdates()
+    {
+        concurrent = false;
+    }
+
+    /**
+     * @return How many free organisms of the given species are held.
+     */
+    public int getFreeCount(int speciesCode)
+    {
+        return freeCount[speciesCode];
+    }
+
+    /**
+     * @return The fraction of requests for the given species that were
+     *         met from the pool, or 0 if there have been none.
+     */
+    public double getHitRate(int speciesCode)
+    {
+        long requests = hits[speciesCode] + misses[speciesCode];
+        return requests == 0 ? 0 : (double) hits[speciesCode] / requests;
+    }
+
+    /**
+     * Get details of how well the pool is being used.
+     * @return A string giving the hit rate and free count of each species.
+     */
+    public String getPoolDetails()
+    {
+        StringBuilder buffer = new StringBuilder();
+        for(int code = 0; code < Species.COUNT; code++) {
+            if(hits[code] + misses[code] > 0 || freeCount[code] > 0) {
+                buffer.append(Species.getName(code));
+                buffer.append(": ");
+                buffer.append(String.format("%.1f%%", 100 * getHitRate(code)));
+                buffer.append(" hits, ");
+                buffer.append(freeCount[code]);
+                buffer.append(" free ");
+            }
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Take a free organism of the given species off its stack.
+     * @return The organism, or null if there is none.
+     */
+    private Organism take(int speciesCode)
+    {
+        int count = freeCount[speciesCode];
+        if(count == 0) {
+            misses[speciesCode]++;
+            return null;
+        }
+        hits[speciesCode]++;
+        Organism[] stack = free[speciesCode];
+        Organism organism = stack[--count];
+        stack[count] = null;
+        freeCount[speciesCode] = count;
+        return organism;
+    }
+
+    /**
+     * Push an organism on its species' stack, growing the stack if necessary.
+     */
+    private void put(Organism organism)
+    {
+        int code = organism.getSpeciesCode();
+        Organism[] stack = free[code];
+        int count = freeCount[code];
+        if(stack == null) {
+            stack = new Organism[INITIAL_CAPACITY];
+            free[code] = stack;
+        }
+        else if(count == stack.length) {
+            stack = Arrays.copyOf(stack, count * 2);
+            free[code] = stack;
+        }
+        stack[count] = organism;
+        freeCount[code] = count + 1;
+    }
+}
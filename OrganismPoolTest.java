@@ -0,0 +1,137 @@
+
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The test class OrganismPoolTest. An organism taken from the pool must
+ * be indistinguishable from a newly created one.
+ *
+ * @author David J. Barnes and Michael Kölling
+ * @version 2016.02.29
+ */
+public class OrganismPoolTest
+{
+    // The seed of the generator the organisms draw from.
+    private static final long SEED = 8;
+
+    private Field field;
+    private OrganismPool pool;
+    private Species deer;
+
+    /**
+     * Default constructor for test class OrganismPoolTest
+     */
+    public OrganismPoolTest()
+    {
+    }
+
+    /**
+     * Sets up the test fixture.
+     *
+     * Called before every test case method.
+     */
+    @BeforeEach
+    public void setUp()
+    {
+        Randomizer.bind(new RestorableRandom(SEED));
+        field = new Field(20, 20);
+        pool = field.getPool();
+        deer = Species.get(Species.DEER);
+    }
+
+    /**
+     * Tears down the test fixture.
+     *
+     * Called after every test case method.
+     */
+    @AfterEach
+    public void tearDown()
+    {
+        Randomizer.unbind();
+    }
+
+    @Test
+    public void testReleasedOrganismIsReinitialized()
+    {
+        for(boolean randomAge : new boolean[] {false, true}) {
+            Organism used = pool.acquire(deer, true, field, new Location(1, 1));
+            used.restore(100, 1);
+            used.setDead();
+            pool.release(used);
+
+            Location location = new Location(7, 9);
+            Randomizer.bind(new RestorableRandom(SEED));
+            Organism fresh = deer.create(randomAge, new Field(20, 20), location);
+            Randomizer.bind(new RestorableRandom(SEED));
+            Organism reused = pool.acquire(deer, randomAge, field, location);
+
+            assertSame(used, reused);
+            assertTrue(reused.isAlive());
+            assertEquals(location, reused.getLocation());
+            assertSame(reused, field.getObjectAt(location));
+            assertEquals(fresh.getAge(), reused.getAge(), "Age with random age " + randomAge);
+            assertEquals(fresh.getFoodLevel(), reused.getFoodLevel());
+            assertNull(field.getObjectAt(new Location(1, 1)));
+            reused.setDead();
+        }
+    }
+
+    @Test
+    public void testHitRate()
+    {
+        assertEquals(0.0, pool.getHitRate(Species.DEER), 0.0);
+        List<Organism> organisms = new ArrayList<>();
+        for(int n = 0; n < 3; n++) {
+            organisms.add(pool.acquire(deer, false, field, new Location(0, n)));
+        }
+        assertEquals(0.0, pool.getHitRate(Species.DEER), 0.0);
+        for(Organism organism : organisms) {
+            organism.setDead();
+            pool.release(organism);
+        }
+        assertEquals(3, pool.getFreeCount(Species.DEER));
+
+        pool.acquire(deer, false, field, new Location(1, 0));
+        assertEquals(0.25, pool.getHitRate(Species.DEER), 0.0);
+        assertEquals(2, pool.getFreeCount(Species.DEER));
+        assertTrue(pool.getPoolDetails().contains("25.0% hits, 2 free"));
+        assertEquals(0.0, pool.getHitRate(Species.TREE), 0.0);
+    }
+
+    @Test
+    public void testSpeciesKeptApart()
+    {
+        Organism organism = pool.acquire(deer, false, field, new Location(0, 0));
+        organism.setDead();
+        pool.release(organism);
+
+        Organism tree = pool.acquire(Species.get(Species.TREE), false, field, new Location(0, 0));
+        assertTrue(tree instanceof Tree);
+        assertEquals(1, pool.getFreeCount(Species.DEER));
+        assertEquals(0.0, pool.getHitRate(Species.TREE), 0.0);
+    }
+
+    @Test
+    public void testManyReleased()
+    {
+        List<Organism> organisms = new ArrayList<>();
+        for(int n = 0; n < 100; n++) {
+            organisms.add(pool.acquire(deer, false, field, new Location(n / 20, n % 20)));
+        }
+        for(Organism organism : organisms) {
+            organism.setDead();
+            pool.release(organism);
+        }
+        for(int n = 0; n < 100; n++) {
+            Organism organism = pool.acquire(deer, false, field, new Location(n / 20, n % 20));
+            assertTrue(organisms.contains(organism));
+        }
+        assertEquals(0, pool.getFreeCount(Species.DEER));
+        assertEquals(0.5, pool.getHitRate(Species.DEER), 0.0);
+    }
+}
@@ -0,0 +1,60 @@
+import java.awt.Color;
+
+/**
+ * The colors in which the locations of a field are drawn, indexed by
+ * species code: the color given to each species, white for empty
+ * locations, and gray for species that have not been given one. The
+ * view and the frame exporter each keep one, so that they draw a field
+ * alike.
+ *
+ * @author David J. Barnes and Michael Kölling
+ * @version 2016.02.29
+ */
+public class Palette
+{
+    // Color used for empty locations.
+    private static final Color EMPTY_COLOR = Color.white;
+    // Color used for species that have no defined color.
+    private static final Color UNKNOWN_COLOR = Color.gray;
+
+    // The RGB color of each species code.
+    private final int[] colors;
+
+    /**
+     * Create a palette in which no species has a color of its own yet.
+     */
+    public Palette()
+    {
+        colors = new int[Species.COUNT];
+        for(int code = 0; code < colors.length; code++) {
+            colors[code] = UNKNOWN_COLOR.getRGB();
+        }
+        colors[Species.EMPTY] = EMPTY_COLOR.getRGB();
+    }
+
+    /**
+     * Define a color to be used for a given class of organism.
+     * @param organismClass The organism's Class object.
+     * @param color The color to be used for the given class.
+     * @return true if the class is that of a registered species, and so
+     *         has been given the color.
+     */
+    public boolean setColor(Class<? extends Organism> organismClass, Color color)
+    {
+        byte code = Species.codeOf(organismClass);
+        if(code == Species.OTHER) {
+            return false;
+        }
+        colors[code] = color.getRGB();
+        return true;
+    }
+
+    /**
+     * Return the RGB color of each species code. They must not be changed.
+     * @return The colors, indexed by species code.
+     */
+    public int[] getColors()
+    {
+        return colors;
+    }
+}
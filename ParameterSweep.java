@@ -0,0 +1,398 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Explores a grid of parameter values. Each axis of the grid is one
+ * parameter and the values to try for it; every combination of values
+ * is a point, and at each point an Ensemble of runs is simulated with
+ * the base parameters changed to the point's values. Points are run in
+ * parallel, each on a thread of its own.
+ *
+ * The summary of each point is cached, keyed by everything that decides
+ * it: the parameters, the field size, the steps, the number of runs and
+ * the first seed. The cache is kept in memory for the life of the sweep
+ * and, if a cache directory is given, in a file per point, so a sweep
+ * that is run again or extended only simulates the points it has not
+ * seen before.
+ *
+ * A sweep can be run from the command line with a properties file that
+ * holds base parameters, as read by Parameters.load, together with:
+ *   sweep.axis.NAME=VALUE,VALUE,...  the values of parameter NAME to try
+ *   sweep.depth, sweep.width         the field size (default 100 by 100)
+ *   sweep.steps                      the most steps of each run (default 500)
+ *   sweep.runs                       the runs at each point (default 10)
+ *   sweep.firstSeed                  the seed of the first run of each point
+ *   sweep.cache                      a cache directory
+ *
+ * @author David J. Barnes and Michael Kölling
+ * @version 2016.02.29
+ */
+public class ParameterSweep
+{
+    // The start of the names of the sweep's own settings in a sweep file.
+    private static final String SETTING_PREFIX = "sweep.";
+    private static final String AXIS_PREFIX = SETTING_PREFIX + "axis.";
+
+    // The parameters changed at each point.
+    private final Parameters base;
+    // The size of each run's field, the most steps of each run and the
+    // number of runs at each point.
+    private final int depth, width, steps, runs;
+    // The seed of the first run at each point.
+    private final long firstSeed;
+    // The parameter and values of each axis, in the order added.
+    private final Map<String, List<String>> axes;
+    // The directory holding a file for each cached point, or null.
+    private Path cacheDirectory;
+    // The summaries of the points simulated so far, by cache key.
+    private final Map<String, Ensemble.Summary> cache;
+
+    /**
+     * Describe a sweep with no axes as yet.
+     * @param base The parameters changed at each point.
+     * @param depth The depth of each run's field.
+     * @param width The width of each run's field.
+     * @param steps The most steps to simulate each run for.
+     * @param runs The number of runs at each point.
+     * @param firstSeed The seed of the first run at each point; run n
+     *                  has seed firstSeed + n.
+     */
+    public ParameterSweep(Parameters base, int depth, int width, int steps, int runs,
+                          long firstSeed)
+    {
+        this.base = base;
+        this.depth = depth;
+        this.width = width;
+        this.steps = steps;
+        this.runs = runs;
+        this.firstSeed = firstSeed;
+        axes = new LinkedHashMap<>();
+        cache = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Run a sweep described by a properties file and print the summary
+     * of each point.
+     * Usage: java ParameterSweep file [threads]
+     * @param args The sweep file, and optionally the number of threads.
+     * @throws IOException If the file or the cache cannot be read.
+     * @throws InterruptedException If the sweep is interrupted.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        Properties properties = new Properties();
+        try(Reader reader = Files.newBufferedReader(Paths.get(args[0]),
+                                                    StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        int threads = args.length > 1 ? Integer.parseInt(args[1])
+                      : Runtime.getRuntime().availableProcessors();
+
+        Properties parameters = new Properties();
+        for(String name : properties.stringPropertyNames()) {
+            if(!name.startsWith(SETTING_PREFIX)) {
+                parameters.setProperty(name, properties.getProperty(name));
+            }
+        }
+        ParameterSweep sweep = new ParameterSweep(
+            Parameters.defaults().with(parameters),
+            Integer.parseInt(properties.getProperty("sweep.depth", "100")),
+            Integer.parseInt(properties.getProperty("sweep.width", "100")),
+            Integer.parseInt(properties.getProperty("sweep.steps", "500")),
+            Integer.parseInt(properties.getProperty("sweep.runs", "10")),
+            Long.parseLong(properties.getProperty("sweep.firstSeed",
+                                                  String.valueOf(Randomizer.getSeed()))));
+        if(properties.getProperty("sweep.cache") != null) {
+            sweep.setCacheDirectory(Paths.get(properties.getProperty("sweep.cache")));
+        }
+        for(String name : new TreeSet<>(properties.stringPropertyNames())) {
+            if(name.startsWith(AXIS_PREFIX)) {
+                sweep.addAxis(name.substring(AXIS_PREFIX.length()),
+                              properties.getProperty(name).split(","));
+            }
+        }
+
+        sweep.run(threads, (point, finished, total) -> {
+            System.out.println("Point " + finished + " of " + total + ": "
+                               + point.getSettings() + (point.isCached() ? " (cached)" : ""));
+            System.out.print(point.getSummary().getDetails());
+        });
+    }
+
+    /**
+     * Keep the summary of each point in a file in the given directory,
+     * as well as in memory.
+     * @param directory The directory. It is created if necessary.
+     * @throws IOException If the directory cannot be created.
+     */
+    public void setCacheDirectory(Path directory) throws IOException
+    {
+        Files.createDirectories(directory);
+        cacheDirectory = directory;
+    }
+
+    /**
+     * Add an axis to the grid, or replace the values of an existing one.
+     * @param name The name of a parameter.
+     * @param values The values of the parameter to try.
+     * @throws IllegalArgumentException If the name is unknown or a value
+     *                                  is not valid for it.
+     */
+    public void addAxis(String name, String... values)
+    {
+        List<String> checked = new ArrayList<>();
+        for(String value : values) {
+            base.with(name, value);
+            checked.add(value.trim());
+        }
+        axes.put(name.trim(), checked);
+    }
+
+    /**
+     * @return Every point of the grid, not yet run. With no axes there is
+     *         a single point, of the base parameters.
+     */
+    public List<Point> getPoints()
+    {
+        List<Map<String, String>> grid = new ArrayList<>();
+        grid.add(new LinkedHashMap<>());
+        for(Map.Entry<String, List<String>> axis : axes.entrySet()) {
+            List<Map<String, String>> extended = new ArrayList<>();
+            for(Map<String, String> settings : grid) {
+                for(String value : axis.getValue()) {
+                    Map<String, String> point = new LinkedHashMap<>(settings);
+                    point.put(axis.getKey(), value);
+                    extended.add(point);
+                }
+            }
+            grid = extended;
+        }
+
+        List<Point> points = new ArrayList<>();
+        for(Map<String, String> settings : grid) {
+            points.add(new Point(settings, base.with(settings)));
+        }
+        return points;
+    }
+
+    /**
+     * Run every point of the grid, taking those already simulated from
+     * the cache, and wait until all have finished.
+     * @param threads The number of points simulated at once.
+     * @param listener Told about each point as it finishes, on this
+     *                 thread; may be null.
+     * @return Every point, in grid order, with its summary.
+     * @throws InterruptedException If this thread is interrupted; the
+     *                              points still going are abandoned.
+     */
+    public List<Point> run(int threads, Listener listener) throws InterruptedException
+    {
+        List<Point> points = getPoints();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CompletionService<Point> completed = new ExecutorCompletionService<>(executor);
+            for(Point point : points) {
+                completed.submit(() -> runPoint(point));
+            }
+            for(int finished = 1; finished <= points.size(); finished++) {
+                Point point;
+                try {
+                    point = completed.take().get();
+                }
+                catch(ExecutionException e) {
+                    throw new IllegalStateException("A point of the sweep failed", e.getCause());
+                }
+                if(listener != null) {
+                    listener.pointFinished(point, finished, points.size());
+                }
+            }
+            return points;
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Find the summary of a point in the cache or, failing that, simulate
+     * it and add it to the cache.
+     * @return The point, with its summary.
+     */
+    private Point runPoint(Point point) throws IOException
+    {
+        String key = "depth=" + depth + "\nwidth=" + width + "\nsteps=" + steps
+                     + "\nruns=" + runs + "\nfirstSeed=" + firstSeed + "\n"
+                     + point.getParameters();
+        Ensemble.Summary summary = cache.get(key);
+        if(summary == null && cacheDirectory != null) {
+            summary = readCached(key);
+        }
+        if(summary != null) {
+            point.summary = summary;
+            point.cached = true;
+            cache.putIfAbsent(key, summary);
+            return point;
+        }
+
+        summary = new Ensemble(depth, width, steps, point.getParameters()).run(firstSeed, runs);
+        cache.put(key, summary);
+        if(cacheDirectory != null) {
+            writeCached(key, summary);
+        }
+        point.summary = summary;
+        return point;
+    }
+
+    /**
+     * Read the summary with the given key from the cache directory.
+     * @return The summary, or null if it is not there or the file is damaged.
+     */
+    private Ensemble.Summary readCached(String key) throws IOException
+    {
+        Path file = cacheFile(key);
+        if(!Files.exists(file)) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try(Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        if(!key.equals(properties.getProperty("key"))) {
+            return null;
+        }
+        try {
+            return Ensemble.Summary.fromProperties(properties);
+        }
+        catch(IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Write a summary to the cache directory. The file is written under
+     * another name and then renamed, so that it is never seen half written.
+     */
+    private void writeCached(String key, Ensemble.Summary summary) throws IOException
+    {
+        Properties properties = summary.toProperties();
+        properties.setProperty("key", key);
+        Path file = cacheFile(key);
+        Path temporary = Files.createTempFile(cacheDirectory, "point", ".tmp");
+        try(Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            properties.store(writer, null);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return The file in the cache directory for the given key, named by
+     *         a hash of the key.
+     */
+    private Path cacheFile(String key)
+    {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256")
+                                       .digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder();
+            for(byte b : hash) {
+                name.append(String.format("%02x", b));
+            }
+            return cacheDirectory.resolve(name + ".properties");
+        }
+        catch(NoSuchAlgorithmException e) {
+            // Every Java platform supports SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Told about each point of a sweep as it finishes.
+     */
+    public interface Listener
+    {
+        /**
+         * Report a finished point.
+         * @param point The point, with its summary.
+         * @param finished The number of points finished, including this one.
+         * @param total The number of points in the sweep.
+         */
+        void pointFinished(Point point, int finished, int total);
+    }
+
+    /**
+     * One point of the grid: a value for each axis.
+     */
+    public static class Point
+    {
+        // The value of each axis, in the order the axes were added.
+        private final Map<String, String> settings;
+        // The base parameters changed to the values of the axes.
+        private final Parameters parameters;
+        // The summary of the point's runs, once it has been run.
+        private Ensemble.Summary summary;
+        // Whether the summary came from the cache.
+        private boolean cached;
+
+        /**
+         * Create a point that has not yet been run.
+         */
+        Point(Map<String, String> settings, Parameters parameters)
+        {
+            this.settings = settings;
+            this.parameters = parameters;
+        }
+
+        /**
+         * @return The value of each axis at this point, by parameter name.
+         */
+        public Map<String, String> getSettings()
+        {
+            return new LinkedHashMap<>(settings);
+        }
+
+        /**
+         * @return The parameters of the point's runs.
+         */
+        public Parameters getParameters()
+        {
+            return parameters;
+        }
+
+        /**
+         * @return The summary of the point's runs, or null if it has not been run.
+         */
+        public Ensemble.Summary getSummary()
+        {
+            return summary;
+        }
+
+        /**
+         * @return Whether the summary came from the cache.
+         */
+        public boolean isCached()
+        {
+            return cached;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The test class ParameterSweepTest. A sweep run again, or a new sweep
+ * with the same cache directory, must take every point from the cache.
+ *
+ * @author David J. Barnes and Michael Kölling
+ * @version 2016.02.29
+ */
+public class ParameterSweepTest
+{
+    // The size of each run's field, its steps and the runs at each point.
+    private static final int DEPTH = 30;
+    private static final int WIDTH = 30;
+    private static final int STEPS = 20;
+    private static final int RUNS = 2;
+
+    private Path cacheDirectory;
+
+    /**
+     * Default constructor for test class ParameterSweepTest
+     */
+    public ParameterSweepTest()
+    {
+    }
+
+    /**
+     * Sets up the test fixture.
+     *
+     * Called before every test case method.
+     */
+    @BeforeEach
+    public void setUp() throws IOException
+    {
+        cacheDirectory = Files.createTempDirectory("sweep");
+    }
+
+    /**
+     * Tears down the test fixture.
+     *
+     * Called after every test case method.
+     */
+    @AfterEach
+    public void tearDown() throws IOException
+    {
+        List<Path> files;
+        try(Stream<Path> walk = Files.walk(cacheDirectory)) {
+            // The directory comes after its files.
+            files = walk.sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+        }
+        for(Path file : files) {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testGrid()
+    {
+        List<ParameterSweep.Point> points = createSweep().getPoints();
+        assertEquals(4, points.size());
+        // The last axis added varies fastest.
+        assertEquals("0.08", points.get(1).getSettings().get("deer.breedingProbability"));
+        assertEquals("150", points.get(1).getSettings().get("deer.maxAge"));
+        assertEquals("0.1", points.get(2).getSettings().get("deer.breedingProbability"));
+        assertEquals(100, points.get(2).getParameters().getSpecies(Species.DEER).getMaxAge());
+    }
+
+    @Test
+    public void testSecondRunIsCached() throws IOException, InterruptedException
+    {
+        ParameterSweep sweep = createSweep();
+        sweep.setCacheDirectory(cacheDirectory);
+        List<ParameterSweep.Point> first = sweep.run(2, null);
+        for(ParameterSweep.Point point : first) {
+            assertFalse(point.isCached());
+            assertEquals(RUNS, point.getSummary().getRuns());
+        }
+
+        // Run again, from the memory of the same sweep.
+        assertAllCached(first, sweep.run(2, null));
+
+        // Run a new sweep, from the files in the cache directory.
+        ParameterSweep again = createSweep();
+        again.setCacheDirectory(cacheDirectory);
+        assertAllCached(first, again.run(3, null));
+    }
+
+    @Test
+    public void testExtendedSweepRunsOnlyNewPoints() throws IOException, InterruptedException
+    {
+        ParameterSweep sweep = createSweep();
+        sweep.setCacheDirectory(cacheDirectory);
+        sweep.run(2, null);
+
+        ParameterSweep extended = createSweep();
+        extended.setCacheDirectory(cacheDirectory);
+        extended.addAxis("deer.maxAge", "100", "150", "200");
+        int cached = 0;
+        for(ParameterSweep.Point point : extended.run(2, null)) {
+            assertEquals(!point.getSettings().get("deer.maxAge").equals("200"),
+                         point.isCached());
+            if(point.isCached()) {
+                cached++;
+            }
+        }
+        assertEquals(4, cached);
+    }
+
+    @Test
+    public void testUnknownAxis()
+    {
+        ParameterSweep sweep = createSweep();
+        assertThrows(IllegalArgumentException.class, () -> sweep.addAxis("deer.speed", "1"));
+        assertThrows(IllegalArgumentException.class,
+                     () -> sweep.addAxis("deer.breedingProbability", "2"));
+    }
+
+    /**
+     * @return A sweep of four points: two breeding probabilities of deer
+     *         by two maximum ages.
+     */
+    private ParameterSweep createSweep()
+    {
+        ParameterSweep sweep = new ParameterSweep(Parameters.defaults(), DEPTH, WIDTH, STEPS,
+                                                  RUNS, 5);
+        sweep.addAxis("deer.breedingProbability", "0.08", "0.1");
+        sweep.addAxis("deer.maxAge", "100", "150");
+        return sweep;
+    }
+
+    /**
+     * Check that every point of a run came from the cache, with the
+     * summary of the same point in the first run.
+     */
+    private void assertAllCached(List<ParameterSweep.Point> first,
+                                 List<ParameterSweep.Point> points)
+    {
+        assertEquals(first.size(), points.size());
+        for(int n = 0; n < points.size(); n++) {
+            ParameterSweep.Point point = points.get(n);
+            assertTrue(point.isCached(), "Point " + point.getSettings() + " cached");
+            assertEquals(first.get(n).getSettings(), point.getSettings());
+            assertEquals(first.get(n).getSummary().getDetails(), point.getSummary().getDetails());
+        }
+    }
+}
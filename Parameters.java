@@ -0,0 +1,352 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * The figures that govern a simulation, so that they can be changed
+ * without recompiling: for each species the probability that it is
+ * placed at a location when the field is populated, the figures of its
+ * Species descriptor, and the likelihood of each of its meals.
+ *
+ * Parameters are named by the lower-case species name and the figure,
+ * as in a properties file:
+ *   deer.creationProbability=0.02
+ *   deer.breedingAge=15
+ *   deer.maxAge=150
+ *   deer.breedingProbability=0.08
+ *   deer.maxLitterSize=2
+ *   deer.foodValue=9
+ *   deer.eats.grass=1.0
+ * Any parameter not given keeps its default value, which for the species
+ * figures is that of the registered Species. Parameters are immutable.
+ *
+ * @author David J. Barnes and Michael Kölling
+ * @version 2016.02.29
+ */
+public class Parameters
+{
+    // The default probability that each species is created at a location.
+    private static final double DEER_CREATION_PROBABILITY = 0.02;
+    private static final double GRASS_CREATION_PROBABILITY = 0.08;
+    private static final double TREE_CREATION_PROBABILITY = 0.01;
+    private static final double FIRE_CREATION_PROBABILITY = 0.009;
+    // The names of the figures of each species.
+    private static final String CREATION_PROBABILITY = "creationProbability";
+    private static final String BREEDING_AGE = "breedingAge";
+    private static final String MAX_AGE = "maxAge";
+    private static final String BREEDING_PROBABILITY = "breedingProbability";
+    private static final String MAX_LITTER_SIZE = "maxLitterSize";
+    private static final String FOOD_VALUE = "foodValue";
+    private static final String EATS = "eats.";
+
+    // The default parameters.
+    private static final Parameters DEFAULTS = new Parameters(defaultValues());
+
+    // The value of every parameter, by name.
+    private final TreeMap<String, String> values;
+    // The species described by the parameters, indexed by code; null for
+    // codes with no registered species.
+    private final Species[] species;
+    // The creation probability of each species, indexed by code.
+    private final double[] creationProbabilities;
+
+    /**
+     * Create parameters with the given values, checking them all.
+     * @throws IllegalArgumentException If a value is not a number, a
+     *         probability is not between 0 and 1, or a whole number is too small.
+     */
+    private Parameters(TreeMap<String, String> values)
+    {
+        this.values = values;
+        species = new Species[Species.COUNT];
+        creationProbabilities = new double[Species.COUNT];
+        for(int code = 0; code < Species.COUNT; code++) {
+            Species registered = Species.get(code);
+            if(registered != null) {
+                creationProbabilities[code] = getDouble(code, CREATION_PROBABILITY);
+                species[code] = registered.derive(getInt(code, BREEDING_AGE, 0),
+                                                  getInt(code, MAX_AGE, 1),
+                                                  getDouble(code, BREEDING_PROBABILITY),
+                                                  getInt(code, MAX_LITTER_SIZE, 0),
+                                                  getInt(code, FOOD_VALUE, 0));
+            }
+        }
+        for(int code = 0; code < Species.COUNT; code++) {
+            for(int prey = 0; prey < Species.COUNT; prey++) {
+                if(species[code] != null && species[prey] != null
+                   && values.containsKey(key(code, EATS + prefix(prey)))) {
+                    species[code].setPrey((byte) prey,
+                                          getDouble(code, EATS + prefix(prey)));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The default parameters.
+     */
+    public static Parameters defaults()
+    {
+        return DEFAULTS;
+    }
+
+    /**
+     * Read parameters from a properties file. Parameters it does not
+     * give keep their default values.
+     * @param file The file.
+     * @return The parameters.
+     * @throws IOException If the file cannot be read.
+     * @throws IllegalArgumentException If it holds an unknown parameter
+     *                                  or a value that is not a number.
+     */
+    public static Parameters load(Path file) throws IOException
+    {
+        try(Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return read(reader);
+        }
+    }
+
+    /**
+     * Read parameters from text in the form given by toString, or that
+     * of a properties file. Parameters it does not give keep their
+     * default values.
+     * @param text The text.
+     * @return The parameters.
+     * @throws IllegalArgumentException If it holds an unknown parameter
+     *                                  or a value that is not a number.
+     */
+    public static Parameters parse(String text)
+    {
+        try {
+            return read(new StringReader(text));
+        }
+        catch(IOException e) {
+            // A StringReader does not throw.
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * Return a copy of these parameters with some of them changed.
+     * @param changes The new values, by parameter name.
+     * @return The changed parameters.
+     * @throws IllegalArgumentException If a name is unknown or a value
+     *                                  is not a number.
+     */
+    public Parameters with(Map<?, ?> changes)
+    {
+        TreeMap<String, String> changed = new TreeMap<>(values);
+        for(Map.Entry<?, ?> change : changes.entrySet()) {
+            String name = change.getKey().toString().trim();
+            if(!isKnown(name)) {
+                throw new IllegalArgumentException("Unknown parameter " + name);
+            }
+            changed.put(name, change.getValue().toString().trim());
+        }
+        return new Parameters(changed);
+    }
+
+    /**
+     * Return a copy of these parameters with one of them changed.
+     * @param name The name of the parameter.
+     * @param value Its new value.
+     * @return The changed parameters.
+     * @throws IllegalArgumentException If the name is unknown or the value
+     *                                  is not a number.
+     */
+    public Parameters with(String name, String value)
+    {
+        return with(Map.of(name, value));
+    }
+
+    /**
+     * @return The species with the given code, as described by these
+     *         parameters, or null if there is none.
+     */
+    public Species getSpecies(int code)
+    {
+        return species[code];
+    }
+
+    /**
+     * @return The probability that the species with the given code is
+     *         created at a location when the field is populated.
+     */
+    public double getCreationProbability(int code)
+    {
+        return creationProbabilities[code];
+    }
+
+    /**
+     * @return The value of every parameter, by name, in name order.
+     */
+    public Map<String, String> getValues()
+    {
+        return new TreeMap<>(values);
+    }
+
+    /**
+     * @return Every parameter, one "name=value" per line, in name order.
+     *         Equal parameters give equal text.
+     */
+    public String toString()
+    {
+        StringBuilder text = new StringBuilder();
+        for(Map.Entry<String, String> value : values.entrySet()) {
+            text.append(value.getKey()).append('=').append(value.getValue()).append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * Return whether this object holds the same parameters as another.
+     * @param other The other object.
+     * @return true if it is Parameters with the same values.
+     */
+    public boolean equals(Object other)
+    {
+        return other instanceof Parameters && values.equals(((Parameters) other).values);
+    }
+
+    /**
+     * @return A hash code consistent with equals.
+     */
+    public int hashCode()
+    {
+        return values.hashCode();
+    }
+
+    /**
+     * Read parameters in the form of a properties file.
+     */
+    private static Parameters read(Reader reader) throws IOException
+    {
+        Properties properties = new Properties();
+        properties.load(reader);
+        return DEFAULTS.with(properties);
+    }
+
+    /**
+     * @return The default value of every parameter, taken from the
+     *         registered species.
+     */
+    private static TreeMap<String, String> defaultValues()
+    {
+        double[] creationProbabilities = new double[Species.COUNT];
+        creationProbabilities[Species.DEER] = DEER_CREATION_PROBABILITY;
+        creationProbabilities[Species.GRASS] = GRASS_CREATION_PROBABILITY;
+        creationProbabilities[Species.TREE] = TREE_CREATION_PROBABILITY;
+        creationProbabilities[Species.FIRE] = FIRE_CREATION_PROBABILITY;
+
+        TreeMap<String, String> values = new TreeMap<>();
+        for(int code = 0; code < Species.COUNT; code++) {
+            Species species = Species.get(code);
+            if(species != null) {
+                values.put(key(code, CREATION_PROBABILITY),
+                           String.valueOf(creationProbabilities[code]));
+                values.put(key(code, BREEDING_AGE), String.valueOf(species.getBreedingAge()));
+                values.put(key(code, MAX_AGE), String.valueOf(species.getMaxAge()));
+                values.put(key(code, BREEDING_PROBABILITY),
+                           String.valueOf(species.getBreedingProbability()));
+                values.put(key(code, MAX_LITTER_SIZE),
+                           String.valueOf(species.getMaxLitterSize()));
+                values.put(key(code, FOOD_VALUE), String.valueOf(species.getFoodValue()));
+                for(int prey = 0; prey < Species.COUNT; prey++) {
+                    if(species.eats(prey)) {
+                        values.put(key(code, EATS + prefix(prey)),
+                                   String.valueOf(species.getMealProbability(prey)));
+                    }
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Return whether a parameter name is that of a figure of a registered
+     * species, or a meal of one registered species by another.
+     */
+    private static boolean isKnown(String name)
+    {
+        for(int code = 0; code < Species.COUNT; code++) {
+            if(Species.get(code) != null && name.startsWith(prefix(code) + ".")) {
+                String figure = name.substring(prefix(code).length() + 1);
+                if(figure.equals(CREATION_PROBABILITY) || figure.equals(BREEDING_AGE)
+                   || figure.equals(MAX_AGE) || figure.equals(BREEDING_PROBABILITY)
+                   || figure.equals(MAX_LITTER_SIZE) || figure.equals(FOOD_VALUE)) {
+                    return true;
+                }
+                for(int prey = 0; prey < Species.COUNT; prey++) {
+                    if(Species.get(prey) != null && figure.equals(EATS + prefix(prey))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The value of a figure of a species that is a whole number
+     *         no less than the given minimum.
+     */
+    private int getInt(int code, String figure, int minimum)
+    {
+        String name = key(code, figure);
+        try {
+            int value = Integer.parseInt(values.get(name));
+            if(value < minimum) {
+                throw new IllegalArgumentException("Parameter " + name + " must be at least "
+                                                   + minimum);
+            }
+            // Keep the value in a standard form, for equals.
+            values.put(name, String.valueOf(value));
+            return value;
+        }
+        catch(NumberFormatException e) {
+            throw new IllegalArgumentException("Parameter " + name + " is not a whole number");
+        }
+    }
+
+    /**
+     * @return The value of a figure of a species that is a probability.
+     */
+    private double getDouble(int code, String figure)
+    {
+        String name = key(code, figure);
+        try {
+            double value = Double.parseDouble(values.get(name));
+            if(!(value >= 0 && value <= 1)) {
+                throw new IllegalArgumentException("Parameter " + name
+                                                   + " must be between 0 and 1");
+            }
+            values.put(name, String.valueOf(value));
+            return value;
+        }
+        catch(NumberFormatException e) {
+            throw new IllegalArgumentException("Parameter " + name + " is not a number");
+        }
+    }
+
+    /**
+     * @return The name of a figure of the species with the given code.
+     */
+    private static String key(int code, String figure)
+    {
+        return prefix(code) + "." + figure;
+    }
+
+    /**
+     * @return The start of the parameter names of the species with the given code.
+     */
+    private static String prefix(int code)
+    {
+        return Species.getName(code).toLowerCase();
+    }
+}
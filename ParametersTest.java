@@ -0,0 +1,123 @@
+
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The test class ParametersTest. Parameters must survive being written
+ * out and read back, reject names and values that make no sense, and
+ * reach the species they describe.
+ *
+ * @author David J. Barnes and Michael Kölling
+ * @version 2016.02.29
+ */
+public class ParametersTest
+{
+    private Parameters changed;
+
+    /**
+     * Default constructor for test class ParametersTest
+     */
+    public ParametersTest()
+    {
+    }
+
+    /**
+     * Sets up the test fixture.
+     *
+     * Called before every test case method.
+     */
+    @BeforeEach
+    public void setUp()
+    {
+        changed = Parameters.defaults().with("deer.maxAge", "90")
+                                       .with("grass.creationProbability", "0.25")
+                                       .with("fire.eats.tree", "0.4");
+    }
+
+    /**
+     * Tears down the test fixture.
+     *
+     * Called after every test case method.
+     */
+    @AfterEach
+    public void tearDown()
+    {
+    }
+
+    @Test
+    public void testParseToString()
+    {
+        assertEquals(Parameters.defaults(), Parameters.parse(Parameters.defaults().toString()));
+        assertEquals(changed, Parameters.parse(changed.toString()));
+        assertEquals(changed.hashCode(), Parameters.parse(changed.toString()).hashCode());
+        assertNotEquals(Parameters.defaults(), changed);
+    }
+
+    @Test
+    public void testValuesInStandardForm()
+    {
+        assertEquals(Parameters.defaults().with("deer.maxAge", "90"),
+                     Parameters.defaults().with("deer.maxAge", " 090 "));
+        assertEquals(Parameters.defaults().with("deer.breedingProbability", "0.5"),
+                     Parameters.defaults().with("deer.breedingProbability", ".50"));
+    }
+
+    @Test
+    public void testFiguresReachSpecies()
+    {
+        assertEquals(90, changed.getSpecies(Species.DEER).getMaxAge());
+        assertEquals(0.25, changed.getCreationProbability(Species.GRASS), 0.0);
+        assertEquals(Species.get(Species.DEER).getBreedingAge(),
+                     changed.getSpecies(Species.DEER).getBreedingAge());
+        // The registered species are left as they were.
+        assertEquals(150, Species.get(Species.DEER).getMaxAge());
+    }
+
+    @Test
+    public void testMealsReachSpecies()
+    {
+        Species fire = changed.getSpecies(Species.FIRE);
+        assertTrue(fire.eats(Species.TREE));
+        assertEquals(0.4, fire.getMealProbability(Species.TREE), 0.0);
+        assertEquals(Species.get(Species.FIRE).getMealProbability(Species.GRASS),
+                     fire.getMealProbability(Species.GRASS), 0.0);
+        assertEquals(Species.get(Species.FIRE).getMealProbability(Species.TREE),
+                     Parameters.defaults().getSpecies(Species.FIRE)
+                                          .getMealProbability(Species.TREE), 0.0);
+    }
+
+    @Test
+    public void testUnknownNames()
+    {
+        assertThrows(IllegalArgumentException.class,
+                     () -> Parameters.defaults().with("deer.maxage", "90"));
+        assertThrows(IllegalArgumentException.class,
+                     () -> Parameters.defaults().with("wolf.maxAge", "90"));
+        assertThrows(IllegalArgumentException.class,
+                     () -> Parameters.defaults().with("deer.eats.wolf", "0.5"));
+        assertThrows(IllegalArgumentException.class,
+                     () -> Parameters.parse("deer.maxAge=90\nsteps=10\n"));
+    }
+
+    @Test
+    public void testValuesOutOfRange()
+    {
+        assertThrows(IllegalArgumentException.class,
+                     () -> Parameters.defaults().with("deer.breedingProbability", "1.5"));
+        assertThrows(IllegalArgumentException.class,
+                     () -> Parameters.defaults().with("deer.creationProbability", "-0.1"));
+        assertThrows(IllegalArgumentException.class,
+                     () -> Parameters.defaults().with("fire.eats.tree", "NaN"));
+        assertThrows(IllegalArgumentException.class,
+                     () -> Parameters.defaults().with("deer.maxAge", "0"));
+        assertThrows(IllegalArgumentException.class,
+                     () -> Parameters.defaults().with("deer.breedingAge", "-1"));
+        assertThrows(IllegalArgumentException.class,
+                     () -> Parameters.defaults().with("deer.maxLitterSize", "two"));
+        assertThrows(IllegalArgumentException.class,
+                     () -> Parameters.parse("deer.breedingProbability=1.5\n"));
+    }
+}
@@ -5,6 +5,18 @@ import java.util.Random;
 * randomizer, repeated runs will perform exactly the same (which helps with testing). Set  
 * 'useShared' to false to get different random behaviour every time. 
 *  
+* A thread may bind its own generator, which getRandom then returns in place of the
+* shared one. Every Simulator has a generator of its own, which it binds while it
+* runs, so that several simulations can run in one program, on separate threads,
+* each with its own random behaviour. The parallel step engine binds to each thread
+* a CounterRandom, from getStream, and rekeys it for every organism that acts, so
+* that the organism's draws are reproducible however the work is spread over
+* threads. Organisms must therefore ask for the generator each time they need it,
+* rather than keeping a reference to it.
+*
+* The state of the current generator, whether shared or bound, can be read and
+* restored for checkpoints, if it is a RestorableRandom.
+*
 * @author David J. Barnes and Michael Kölling 
 * @version 2016.02.29 
 */ 
@@ -13,9 +25,14 @@ public class Randomizer
     // The default seed for control of randomization. 
     private static final int SEED = 1111; 
     // A shared Random object, if required. 
-    private static final Random rand = new Random(SEED); 
+    private static final RestorableRandom rand = new RestorableRandom(SEED);
     // Determine whether a shared random generator is to be provided. 
     private static final boolean useShared = true; 
+    // A generator bound to the current thread, if any.
+    private static final ThreadLocal<Random> bound = new ThreadLocal<>();
+    // Each thread's counter-based stream.
+    private static final ThreadLocal<CounterRandom> streams =
+        ThreadLocal.withInitial(CounterRandom::new);
   
     /** 
      * Constructor for objects of class Randomizer 
@@ -30,6 +47,10 @@ public class Randomizer
      */ 
     public static Random getRandom() 
     { 
+        Random threadRandom = bound.get();
+        if(threadRandom != null) {
+            return threadRandom;
+        }
         if(useShared) { 
             return rand; 
         } 
@@ -48,4 +69,72 @@ public class Randomizer
             rand.setSeed(SEED); 
         } 
     } 
+
+    /**
+     * @return The current state of the generator returned by getRandom.
+     * @throws IllegalStateException If that generator is not restorable.
+     */
+    public static long getState()
+    {
+        return getRestorable().getState();
+    }
+
+    /**
+     * Continue the generator returned by getRandom from a state returned
+     * by getState.
+     * @param state The state to restore.
+     * @throws IllegalStateException If that generator is not restorable.
+     */
+    public static void setState(long state)
+    {
+        getRestorable().setState(state);
+    }
+
+    /**
+     * @return The seed of the shared generator.
+     */
+    public static long getSeed()
+    {
+        return SEED;
+    }
+
+    /**
+     * Return the current thread's counter-based generator. It should be
+     * rekeyed before use, and is not bound by this method.
+     * @return This thread's CounterRandom.
+     */
+    public static CounterRandom getStream()
+    {
+        return streams.get();
+    }
+
+    /**
+     * Make getRandom return the given generator on the current thread,
+     * until unbind is called.
+     * @param random The generator to use on this thread.
+     */
+    public static void bind(Random random)
+    {
+        bound.set(random);
+    }
+
+    /**
+     * Return to using the shared generator on the current thread.
+     */
+    public static void unbind()
+    {
+        bound.remove();
+    }
+
+    /**
+     * Return the generator returned by getRandom, if its state can be restored.
+     */
+    private static RestorableRandom getRestorable()
+    {
+        Random random = getRandom();
+        if(!(random instanceof RestorableRandom)) {
+            throw new IllegalStateException("The current random generator cannot be restored");
+        }
+        return (RestorableRandom) random;
+    }
 } 
\ No newline at end of file
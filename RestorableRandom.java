@@ -0,0 +1,75 @@
+import java.util.Random;
+
+/**
+ * A random generator whose whole state can be read and restored, so that
+ * a simulation saved in a checkpoint continues with the same random numbers
+ * it would have drawn had it never stopped.
+ *
+ * It uses the same linear congruential formula as java.util.Random, and so
+ * produces exactly the same sequence for the same seed. Unlike Random it is
+ * not safe for use by several threads at once. The value cached between
+ * two calls of nextGaussian is not part of the state.
+ *
+ * @author David J. Barnes and Michael Kölling
+ * @version 2016.02.29
+ */
+public class RestorableRandom extends Random
+{
+    // The version of the serialized form.
+    private static final long serialVersionUID = 1L;
+    // The constants of the generator, as in java.util.Random.
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+
+    // The 48 bits of state.
+    private long state;
+
+    /**
+     * Create a generator with the given seed.
+     * @param seed The initial seed.
+     */
+    public RestorableRandom(long seed)
+    {
+        super(seed);
+    }
+
+    /**
+     * Start the sequence again from the given seed.
+     * @param seed The new seed.
+     */
+    public void setSeed(long seed)
+    {
+        // Also called by the Random constructor.
+        super.setSeed(seed);
+        state = (seed ^ MULTIPLIER) & MASK;
+    }
+
+    /**
+     * @return The current state of the generator.
+     */
+    public long getState()
+    {
+        return state;
+    }
+
+    /**
+     * Restore a state previously returned by getState.
+     * @param state The state to continue from.
+     */
+    public void setState(long state)
+    {
+        this.state = state & MASK;
+    }
+
+    /**
+     * Supply random bits to the other methods inherited from Random.
+     * @param bits The number of bits wanted.
+     * @return That many random bits.
+     */
+    protected int next(int bits)
+    {
+        state = (state * MULTIPLIER + ADDEND) & MASK;
+        return (int) (state >>> (48 - bits));
+    }
+}
@@ -0,0 +1,248 @@
+import java.util.Arrays;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events of a simulation, so that a recording made
+ * with -XX:StartFlightRecording or jcmd shows the steps of a simulation,
+ * the phases within them and the moments when a population crosses a
+ * threshold, next to the garbage collections and allocations of the JVM.
+ * The events are in the "EcoSystem" category, and cost next to nothing
+ * while no recording is running.
+ *
+ * A simulator has a SimulationEvents object that keeps the population
+ * thresholds to watch. By default it watches every species for a count
+ * crossing 1, that is dying out or coming back; the threshold event
+ * carries the number of species still living, so the step at which a
+ * simulation is one extinction away from ceasing to be viable is the
+ * one whose event has two.
+ *
+ * @author David J. Barnes and Michael Kölling
+ * @version 2016.02.29
+ */
+public class SimulationEvents
+{
+    // The population levels watched for each species, by species code.
+    private final int[][] thresholds;
+    // The count of each species at the end of the last step.
+    private final int[] previousCounts;
+
+    /**
+     * Create the events of a simulation, watching each species for
+     * dying out or coming back.
+     */
+    public SimulationEvents()
+    {
+        thresholds = new int[Species.COUNT][];
+        for(int code = 0; code < Species.COUNT; code++) {
+            thresholds[code] = Species.get(code) == null ? new int[0] : new int[] { 1 };
+        }
+        previousCounts = new int[Species.COUNT];
+    }
+
+    /**
+     * Watch for the count of a species reaching or falling below a level.
+     * @param code The species code.
+     * @param level The level.
+     */
+    public void addThreshold(int code, int level)
+    {
+        int[] levels = Arrays.copyOf(thresholds[code], thresholds[code].length + 1);
+        levels[levels.length - 1] = level;
+        thresholds[code] = levels;
+    }
+
+    /**
+     * Start the event of a step.
+     * @return The event, to be passed to endStep.
+     */
+    public StepEvent beginStep()
+    {
+        StepEvent event = new StepEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * End the event of a step and commit it if it is recorded, then
+     * commit a threshold event for each population level crossed.
+     * @param event The event returned by beginStep.
+     * @param step The number of the step.
+     * @param stats Statistics on the population of the field.
+     */
+    public void endStep(StepEvent event, int step, FieldStats stats)
+    {
+        event.end();
+        if(event.shouldCommit()) {
+            event.step = step;
+            event.grass = stats.getCount(Species.GRASS);
+            event.deer = stats.getCount(Species.DEER);
+            event.tree = stats.getCount(Species.TREE);
+            event.fire = stats.getCount(Species.FIRE);
+            event.births = stats.getTotalBirths();
+            event.deaths = stats.getTotalDeaths();
+            event.commit();
+        }
+        int livingSpecies = -1;
+        for(int code = 0; code < Species.COUNT; code++) {
+            int count = stats.getCount(code);
+            int previous = previousCounts[code];
+            for(int level : thresholds[code]) {
+                if((previous >= level) != (count >= level)) {
+                    ThresholdEvent crossed = new ThresholdEvent();
+                    if(crossed.isEnabled()) {
+                        if(livingSpecies < 0) {
+                            livingSpecies = stats.getLivingSpecies();
+                        }
+                        crossed.step = step;
+                        crossed.species = Species.getName(code);
+                        crossed.level = level;
+                        crossed.count = count;
+                        crossed.previousCount = previous;
+                        crossed.falling = count < level;
+                        crossed.livingSpecies = livingSpecies;
+                        crossed.viable = livingSpecies > 1;
+                        crossed.commit();
+                    }
+                }
+            }
+            previousCounts[code] = count;
+        }
+    }
+
+    /**
+     * Note the counts of the species without recording any crossing, as
+     * after the field is populated or restored.
+     * @param stats Statistics on the population of the field.
+     */
+    public void setCounts(FieldStats stats)
+    {
+        for(int code = 0; code < Species.COUNT; code++) {
+            previousCounts[code] = stats.getCount(code);
+        }
+    }
+
+    /**
+     * Start the event of a phase of a step, if phase events are recorded.
+     * @param stats Statistics on the population of the field. They must
+     *              not be being updated from several threads.
+     * @return The event, or null if it is not recorded.
+     */
+    public static PhaseEvent beginPhase(FieldStats stats)
+    {
+        PhaseEvent event = new PhaseEvent();
+        if(!event.isEnabled()) {
+            return null;
+        }
+        // Until the phase ends, these hold the totals at its start.
+        event.births = stats.getTotalBirths();
+        event.deaths = stats.getTotalDeaths();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * End the event of a phase and commit it if it is recorded.
+     * @param event The event returned by beginPhase, or null.
+     * @param step The number of the step.
+     * @param phase The name of the phase.
+     * @param processed The number of organisms or cells it processed.
+     * @param stats Statistics on the population of the field.
+     */
+    public static void endPhase(PhaseEvent event, int step, String phase, int processed,
+                                FieldStats stats)
+    {
+        if(event == null) {
+            return;
+        }
+        event.end();
+        if(event.shouldCommit()) {
+            event.step = step;
+            event.phase = phase;
+            event.processed = processed;
+            event.births = stats.getTotalBirths() - event.births;
+            event.deaths = stats.getTotalDeaths() - event.deaths;
+            event.commit();
+        }
+    }
+
+    /**
+     * One step of a simulation, with the population at its end.
+     */
+    @Name("ecosystem.Step")
+    @Label("Simulation Step")
+    @Category("EcoSystem")
+    @Description("One step of a simulation, with the population at its end")
+    @StackTrace(false)
+    public static class StepEvent extends Event
+    {
+        @Label("Step")
+        int step;
+        @Label("Grass")
+        int grass;
+        @Label("Deer")
+        int deer;
+        @Label("Trees")
+        int tree;
+        @Label("Fire")
+        int fire;
+        @Label("Births")
+        int births;
+        @Label("Deaths")
+        int deaths;
+    }
+
+    /**
+     * One phase of a step, such as the turn of one species.
+     */
+    @Name("ecosystem.Phase")
+    @Label("Simulation Phase")
+    @Category("EcoSystem")
+    @Description("One phase of a simulation step, such as the turn of one species")
+    @StackTrace(false)
+    public static class PhaseEvent extends Event
+    {
+        @Label("Step")
+        int step;
+        @Label("Phase")
+        String phase;
+        @Label("Organisms Processed")
+        int processed;
+        @Label("Births")
+        int births;
+        @Label("Deaths")
+        int deaths;
+    }
+
+    /**
+     * The count of a species reaching or falling below a watched level.
+     */
+    @Name("ecosystem.PopulationThreshold")
+    @Label("Population Threshold Crossed")
+    @Category("EcoSystem")
+    @Description("The count of a species reached or fell below a watched level")
+    @StackTrace(false)
+    public static class ThresholdEvent extends Event
+    {
+        @Label("Step")
+        int step;
+        @Label("Species")
+        String species;
+        @Label("Level")
+        int level;
+        @Label("Count")
+        int count;
+        @Label("Previous Count")
+        int previousCount;
+        @Label("Falling")
+        boolean falling;
+        @Label("Living Species")
+        int livingSpecies;
+        @Label("Viable")
+        boolean viable;
+    }
+}
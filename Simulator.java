@@ -3,12 +3,10 @@ import java.util.Random;
 import java.util.List;  
   
 import java.util.ArrayList;  
-  
-import java.util.Iterator;  
-  
 import java.awt.Color;  
-  
-   
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
   
 /**  
   
@@ -18,6 +16,30 @@ import java.awt.Color;
   
 *   
   
+* A simulator reports its progress to any number of SimulatorObservers.
+* By default it creates a graphical view as its only observer, but it
+* can also be created headless, with no view at all, for unattended runs.
+*
+* The organisms of each species are kept in a list of their own, and a
+* step lets each species act in turn, in order of species code.
+*
+* The state of a simulation can be saved in a Checkpoint with
+* saveCheckpoint, and later resumed from it with resume.
+*
+* Every simulator has a random generator of its own, which is bound to
+* the calling thread while the simulator runs; see Randomizer. It is
+* seeded with the seed the simulator was given, or else with that of the
+* shared generator. Any number of simulators can therefore run at once
+* on separate threads, as an Ensemble does.
+*
+* Steps normally run on the calling thread. After setThreads(n) with n > 1
+* they are run by a TiledStepEngine on n threads instead.
+*
+* After setFireLayer(true), fire is simulated by a FireLayer rather than
+* by Fire organisms, and after setGrassLayer(true) grass is simulated by
+* a GrassLayer. A layer takes its species' turn in a sequential step,
+* and runs after all the organisms when steps are run by the engine.
+*
 * @author David J. Barnes and Michael Kölling  
   
 * @version 2016.02.29  
@@ -37,33 +59,14 @@ public class Simulator
     // The default depth of the grid.  
   
     private static final int DEFAULT_DEPTH = 12;  
-  
-    // The probability that a deer will be created in any given grid position.  
-  
-    private static final double DEER_CREATION_PROBABILITY = 0.02;  
-  
-    // The probability that a grass will be created in any given position.  
-  
-    private static final double GRASS_CREATION_PROBABILITY = 0.08;   
-  
-    // The probability that a tree will be created in any given position.  
-  
-    private static final double TREE_CREATION_PROBABILITY = 0.01;  
-     
-    private static final double FIRE_CREATION_PROBABILITY = 0.009;  
-  
-   
-  
-    // Lists of organisms in the field.  
-  
-    private List<Grass> grass;  
-  
-    private List<Deer> deer;  
-  
-    private List<Tree> tree;  
-     
-    private List<Fire> fire;  
-  
+    // The species tried, in this order, when populating a location.
+    private static final byte[] CREATION_ORDER = {
+        Species.DEER, Species.GRASS, Species.TREE, Species.FIRE
+    };
+  
+    // Lists of organisms in the field, indexed by species code;
+    // null for codes with no registered species.
+    private List<List<Organism>> populations;
     // The current state of the field.  
   
     private Field field;  
@@ -71,12 +74,22 @@ public class Simulator
     // The current step of the simulation.  
   
     private int step;  
-  
-    // A graphical view of the simulation.  
-  
-    private SimulatorView view;  
-  
-      
+    // Statistics on the population of the field.
+    private FieldStats stats;
+    // Observers told about the state of the field after every step.
+    private List<SimulatorObserver> observers;
+    // The engine running steps in parallel, or null to run them on this thread.
+    private TiledStepEngine engine;
+    // The simulation's own random generator.
+    private final RestorableRandom random;
+    // The seed of the random generator used.
+    private final long seed;
+    // The figures governing the simulation.
+    private final Parameters parameters;
+    // The metrics of each step, or null if none are collected.
+    private StepMetrics metrics;
+    // The flight recorder events of the simulation.
+    private final SimulationEvents events;
   
     /**  
   
@@ -107,7 +120,62 @@ public class Simulator
     public Simulator(int depth, int width)  
   
     {  
+        this(depth, width, false);
+    }
   
+    /**  
+     * Create a simulation field with the given size, optionally
+     * without a graphical view. The simulation has a random generator of
+     * its own, with the seed of the shared one.
+     * @param depth Depth of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @param headless If true, no view is created. Observers can still
+     *                 be added with addObserver.
+     */
+    public Simulator(int depth, int width, boolean headless)
+    {
+        this(depth, width, headless, Randomizer.getSeed());
+    }
+  
+    /**
+     * Create a simulation field with the given size and a random
+     * generator of its own.
+     * @param depth Depth of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @param headless If true, no view is created.
+     * @param seed The seed of the simulation's random generator.
+     */
+    public Simulator(int depth, int width, boolean headless, long seed)
+    {
+        this(depth, width, headless, seed, Parameters.defaults());
+    }
+  
+    /**
+     * Create a simulation field with the given size, a random generator
+     * of its own and the given parameters.
+     * @param depth Depth of the field. Must be greater than zero.  
+     * @param width Width of the field. Must be greater than zero.
+     * @param headless If true, no view is created.
+     * @param seed The seed of the simulation's random generator.
+     * @param parameters The figures governing the simulation.
+     */
+    public Simulator(int depth, int width, boolean headless, long seed, Parameters parameters)
+    {
+        this(depth, width, headless, new RestorableRandom(seed), seed, parameters);
+        reset();
+    }
+  
+    /**
+     * Create a simulation field with the given size, random generator
+     * and parameters. The field is left empty.
+     */  
+    private Simulator(int depth, int width, boolean headless, RestorableRandom random,
+                      long seed, Parameters parameters)
+    {  
+        this.random = random;
+        this.seed = seed;
+        this.parameters = parameters;
+        events = new SimulationEvents();
         if(width <= 0 || depth <= 0) {  
   
             System.out.println("The dimensions must be >= zero.");  
@@ -120,38 +188,184 @@ public class Simulator
   
         }  
   
-          
-  
-        grass = new ArrayList<Grass>();  
-  
-        deer = new ArrayList<Deer>();  
-  
-        tree = new ArrayList<Tree>();  
-         
-        fire = new ArrayList<Fire>();  
-  
+        populations = new ArrayList<>();
+        for(int code = 0; code < Species.COUNT; code++) {
+            populations.add(parameters.getSpecies(code) == null ? null : new ArrayList<>());
+        }
         field = new Field(depth, width);  
-  
-   
-  
-        // Create a view of the state of each location in the field.  
-  
-        view = new SimulatorView(depth, width);
-  
-        view.setColor(Grass.class, Color.GREEN);  
-  
-        view.setColor(Deer.class, Color.ORANGE);  
-  
-        view.setColor(Tree.class, Color.BLACK);  
-         
-        view.setColor(Fire.class, Color.RED);  
-  
+        stats = field.getStats();
+        observers = new ArrayList<>();
           
+        if(!headless) {
+            // Create a view of the state of each location in the field.
+            SimulatorView view = new SimulatorView(depth, width);
+            view.setColor(Grass.class, Color.GREEN);
+            view.setColor(Deer.class, Color.ORANGE);
+            view.setColor(Tree.class, Color.BLACK);
+            view.setColor(Fire.class, Color.RED);
+            observers.add(view);
+        }
+    }  
+  
+    /**
+     * Run a headless simulation from the command line and print the
+     * final population.
+     * Usage: java Simulator [steps [depth width [threads [parameters]]]]
+     * With -Decosystem.metrics=true, step metrics are collected, can be
+     * watched over JMX, and are printed at the end.
+     * @param args The number of steps, and optionally the field size,
+     *             the number of threads and a parameters file.
+     * @throws IOException If the parameters file cannot be read.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        int numSteps = args.length > 0 ? Integer.parseInt(args[0]) : 4000;
+        int depth = DEFAULT_DEPTH;
+        int width = DEFAULT_WIDTH;
+        if(args.length > 2) {
+            depth = Integer.parseInt(args[1]);
+            width = Integer.parseInt(args[2]);
+        }
+        Simulator simulator = args.length > 4
+            ? new Simulator(depth, width, true, Randomizer.getSeed(),
+                            Parameters.load(Paths.get(args[4])))
+            : new Simulator(depth, width, true);
+        if(args.length > 3) {
+            simulator.setThreads(Integer.parseInt(args[3]));
+        }
+        simulator.setMetricsEnabled(Boolean.getBoolean("ecosystem.metrics"));
+        simulator.simulate(numSteps);
+        System.out.println("Step: " + simulator.getStep());
+        System.out.println("Population: " + simulator.getStats().getPopulationDetails());
+        System.out.println("Pool: " + simulator.getField().getPool().getPoolDetails());
+        if(simulator.getMetrics() != null) {
+            System.out.print(simulator.getMetrics().getDetails());
+        }
+    }
   
-        // Setup a valid starting point.  
+    /**  
+     * Add an observer to be told about the state of the field after
+     * every step.
+     * @param observer The observer to add.
+     */  
+    public void addObserver(SimulatorObserver observer)
+    {  
+        observers.add(observer);
+        observer.showStatus(step, field, stats);
+    }  
   
-        reset();  
+    /**
+     * Stop telling the given observer about the simulation.
+     * @param observer The observer to remove.
+     */
+    public void removeObserver(SimulatorObserver observer)
+    {
+        observers.remove(observer);
+    }
   
+    /**  
+     * Choose how many threads run each step. With more than one, the
+     * field is split into tiles that are updated in parallel; the results
+     * are reproducible for a given seed but differ from a sequential run.
+     * @param threads The number of threads; 1 to run steps sequentially.
+     */
+    public void setThreads(int threads)
+    {
+        if(engine != null) {
+            engine.shutdown();
+            engine = null;
+        }
+        if(threads > 1) {
+            engine = new TiledStepEngine(field, TiledStepEngine.DEFAULT_TILE_SIZE,
+                                         threads, seed);
+        }
+    }
+  
+    /**
+     * Start or stop collecting metrics on where the time of each step
+     * goes. While collected, the metrics are registered as an MBean, so
+     * they can be watched with JConsole or VisualVM. Their phases are the
+     * turn of each species, in code order, then "Merge", the merging of
+     * the newborns, which the engine does within each turn, and "Status",
+     * the reporting to the observers.
+     * @param enabled true to collect metrics, false to stop and forget them.
+     */
+    public void setMetricsEnabled(boolean enabled)
+    {
+        if(enabled && metrics == null) {
+            List<String> phases = new ArrayList<>();
+            for(int code = 0; code < Species.COUNT; code++) {
+                if(populations.get(code) != null) {
+                    phases.add(Species.getName(code));
+                }
+            }
+            phases.add("Merge");
+            phases.add("Status");
+            metrics = new StepMetrics(phases.toArray(new String[0]));
+            metrics.register();
+        }
+        else if(!enabled && metrics != null) {
+            metrics.unregister();
+            metrics = null;
+        }
+    }
+
+    /**
+     * Record a flight recorder event whenever the count of a species
+     * reaches or falls below a level. Every species is already watched
+     * for dying out and coming back; see SimulationEvents.
+     * @param code The species code.
+     * @param level The level.
+     */
+    public void addPopulationThreshold(int code, int level)
+    {
+        events.addThreshold(code, level);
+    }
+
+    /**
+     * @return The metrics of each step, or null if none are being collected.
+     */
+    public StepMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+    /**
+     * Choose whether fire is simulated by a FireLayer, as a bitset of
+     * burning cells, or by Fire organisms. The fire already burning is
+     * carried over from one to the other with its ages, food levels and
+     * order, without drawing random numbers.
+     * @param layered true to use a layer, false to use organisms.
+     */
+    public void setFireLayer(boolean layered)
+    {
+        if(layered) {
+            if(field.getLayer(Species.FIRE) == null) {
+                toLayer(new FireLayer(field, parameters.getSpecies(Species.FIRE)));
+            }
+        }
+        else {
+            toOrganisms(Species.FIRE);
+        }
+    }
+
+    /**
+     * Choose whether grass is simulated by a GrassLayer, as a bitset of
+     * cells of grass, or by Grass organisms. The grass already growing is
+     * carried over from one to the other with its ages and order, without
+     * drawing random numbers.
+     * @param layered true to use a layer, false to use organisms.
+     */
+    public void setGrassLayer(boolean layered)
+    {
+        if(layered) {
+            if(field.getLayer(Species.GRASS) == null) {
+                toLayer(new GrassLayer(field, parameters.getSpecies(Species.GRASS)));
+            }
+        }
+        else {
+            toOrganisms(Species.GRASS);
+        }
     }  
   
       
@@ -187,9 +401,7 @@ public class Simulator
     public void simulate(int numSteps)  
   
     {  
-  
-        for(int step=1; step <= numSteps && view.isViable(field); step++) {  
-  
+        for(int step=1; step <= numSteps && isViable(); step++) {
             simulateOneStep();  
   
             // delay(60);   // uncomment this to run more slowly  
@@ -201,116 +413,168 @@ public class Simulator
       
   
     /**  
-  
-     * Run the simulation from its current state for a single step. Iterate  
-  
-     * over the whole field updating the state of each deer, grass and tree.  
-  
+     * Run the simulation from its current state for a single step.
      */  
   
     public void simulateOneStep()  
   
     {  
-  
+        bindRandom();
+        try {
+            runOneStep();
+        }
+        finally {
+            unbindRandom();
+        }
+    }
+  
+    /**
+     * Run a single step. Let every organism of each species act in turn,
+     * one species at a time. Each species' turn, the merging of the
+     * newborns and the reporting to the observers are recorded as phases
+     * in the metrics, if they are being collected, and as flight recorder
+     * events, if those are being recorded.
+     */
+    private void runOneStep()
+    {
+        StepMetrics measuring = metrics != null && metrics.isEnabled() ? metrics : null;
+        SimulationEvents.StepEvent stepEvent = events.beginStep();
         step++;  
-  
-   
-  
-        // Provide space for newborn grass.  
-  
-        List<Grass> newGrass = new ArrayList<>();          
-  
-        // Let all grass act.  
-  
-        for(Iterator<Grass> it = grass.iterator(); it.hasNext(); ) {  
-  
-            Grass grass = it.next();  
-  
-            grass.run(newGrass);  
-  
-            if(! grass.isAlive()) {  
-  
-                it.remove();  
-  
+        stats.startStep();
+        field.clearChanges();
+  
+        if(engine != null) {
+            engine.step(step, populations, measuring);
+            int phase = 0;
+            for(int code = 0; code < Species.COUNT; code++) {
+                if(populations.get(code) != null) {
+                    SpeciesLayer layer = field.getLayer(code);
+                    if(layer != null) {
+                        SimulationEvents.PhaseEvent event = startPhase(measuring);
+                        int size = layer.size();
+                        layer.step();
+                        endPhase(measuring, event, phase, Species.getName(code), size);
+                    }
+                    phase++;
+                }
             }  
   
         }  
-  
-          
-  
-        // Provide space for newborn deer.  
-  
-        List<Deer> newDeer = new ArrayList<>();          
-  
-        // Let all deer act.  
-  
-        for(Iterator<Deer> it = deer.iterator(); it.hasNext(); ) {  
-  
-            Deer deer = it.next();  
-  
-            deer.hunt(newDeer);  
-  
-            if(! deer.isAlive()) {  
-  
-                it.remove();  
-  
-            }  
-  
+        else {
+            // Provide space for the newborns of each species.
+            List<List<Organism>> newborns = new ArrayList<>();
+            int phase = 0;
+            for(int code = 0; code < Species.COUNT; code++) {
+                List<Organism> population = populations.get(code);
+                List<Organism> young = null;
+                if(population != null) {
+                    young = new ArrayList<>();
+                    SimulationEvents.PhaseEvent event = startPhase(measuring);
+                    SpeciesLayer layer = field.getLayer(code);
+                    int size = layer != null ? layer.size() : population.size();
+                    if(layer != null) {
+                        // The species has no organisms; its layer steps instead.
+                        layer.step();
+                    }
+                    else {
+                        // Let all organisms of this species act.
+                        for(int index = 0; index < population.size(); index++) {
+                            population.get(index).act(young);
+                        }
+                    }
+                    endPhase(measuring, event, phase++, Species.getName(code), size);
+                }
+                newborns.add(young);
+            }
+  
+            // Remove the dead and add the newborns to the main lists.
+            SimulationEvents.PhaseEvent event = startPhase(measuring);
+            int merged = 0;
+            for(int code = 0; code < Species.COUNT; code++) {
+                if(populations.get(code) != null) {
+                    merged += populations.get(code).size() + newborns.get(code).size();
+                    sweep(populations.get(code), newborns.get(code), field.getPool());
+                }
+            }
+            endPhase(measuring, event, phase, "Merge", merged);
         }  
   
-          
-  
-        // Provide space for newborn trees.  
-  
-        List<Tree> newTrees = new ArrayList<>();          
-  
-        // Let all trees act.  
-  
-        for(Iterator<Tree> it = tree.iterator(); it.hasNext(); ) {  
-  
-            Tree tree = it.next();  
-  
-            tree.grow(newTrees);  
+        SimulationEvents.PhaseEvent event = startPhase(measuring);
+        showStatus();
+        endPhase(measuring, event, measuring == null ? 0 : measuring.getPhases().length - 1,
+                 "Status", observers.size());
+        if(measuring != null) {
+            measuring.endStep();
+        }
+        events.endStep(stepEvent, step, stats);
+    }  
   
-            if(! tree.isAlive()) {  
+    /**
+     * Note the start of a phase in the metrics, if any, and begin its
+     * flight recorder event.
+     * @return The event, or null if it is not recorded.
+     */
+    private SimulationEvents.PhaseEvent startPhase(StepMetrics measuring)
+    {
+        if(measuring != null) {
+            measuring.startPhase(stats);
+        }
+        return SimulationEvents.beginPhase(stats);
+    }
   
-                it.remove();  
+    /**  
+     * Record a phase in the metrics, if any, and end its event.
+     */  
+    private void endPhase(StepMetrics measuring, SimulationEvents.PhaseEvent event,
+                          int phase, String name, int processed)
+    {  
+        if(measuring != null) {
+            measuring.endPhase(phase, processed, stats);
+        }  
+        SimulationEvents.endPhase(event, step, name, processed, stats);
+    }  
   
+    /**
+     * Remove the dead organisms from a list and add the newborns to its
+     * end, in a single pass. The survivors are moved down over the dead,
+     * keeping their order, and the list is cut once at the end, so the
+     * pass takes time linear in the size of the list however many died.
+     * Newborns that have died since their birth, as when eaten later in
+     * the step, are not added. The dead are returned to the pool.
+     * @param population The organisms of one species.
+     * @param newborns The newborns to add.
+     * @param pool The pool of the field the organisms live in.
+     */
+    static void sweep(List<Organism> population, List<Organism> newborns, OrganismPool pool)
+    {
+        int size = population.size();
+        int kept = 0;
+        for(int index = 0; index < size; index++) {
+            Organism organism = population.get(index);
+            if(organism.isAlive()) {
+                population.set(kept++, organism);
+            }
+            else {
+                pool.release(organism);
             }  
   
         }  
-List<Fire> newFire = new ArrayList<>();          
-  
-        // Let all trees act.  
-  
-        for(Iterator<Fire> it = fire.iterator(); it.hasNext(); ) {  
-  
-            Fire fire = it.next();  
-  
-            fire.spread(newFire);  
-  
-            if(! fire.isAlive()) {  
-  
-                it.remove();  
-  
+        for(Organism young : newborns) {
+            if(!young.isAlive()) {
+                pool.release(young);
+                continue;
+            }
+            if(kept < size) {
+                population.set(kept, young);
             }  
-  
+            else {
+                population.add(young);
+            }
+            kept++;
+        }  
+        if(kept < size) {
+            population.subList(kept, size).clear();
         }  
-  
-        // Add the newly born deer, trees and grass and newly spread fire to the main lists.  
-  
-        grass.addAll(newGrass);  
-  
-        deer.addAll(newDeer);  
-  
-        tree.addAll(newTrees);  
-         
-        fire.addAll(newFire);  
-  
-   
-  
-        view.showStatus(step, field);  
-  
     }  
   
           
@@ -326,23 +590,241 @@ List<Fire> newFire = new ArrayList<>();
     {  
   
         step = 0;  
+        clearPopulations();
+        bindRandom();
+        try {
+            populate();
+        }
+        finally {
+            unbindRandom();
+        }
+        events.setCounts(stats);
+  
+        // Show the starting state to the observers.
+        showStatus();
+    }  
   
-        grass.clear();  
-  
-        deer.clear();  
-  
-        tree.clear(); 
-         
-        fire.clear();  
-  
-        populate();  
+    /**
+     * Save the current state of the simulation, so that it can later
+     * be resumed from this step.
+     * @param file The file to write, replacing any existing file.
+     * @throws IOException If the checkpoint cannot be written.
+     */
+    public void saveCheckpoint(Path file) throws IOException
+    {
+        bindRandom();
+        try {
+            Checkpoint.save(file, step, seed, parameters, field, populations);
+        }
+        finally {
+            unbindRandom();
+        }
+    }
   
-          
+    /**  
+     * Replace the state of the simulation with one saved by saveCheckpoint.
+     * The checkpoint must be of a field of the same size as this one, and
+     * saved with the same parameters.
+     * @param file The checkpoint file.
+     * @throws IOException If the checkpoint cannot be read, is damaged,
+     *                     is of a field of another size or was saved
+     *                     with other parameters.
+     */  
+    public void resume(Path file) throws IOException
+    {  
+        Checkpoint checkpoint = Checkpoint.open(file);
+        if(checkpoint.getDepth() != field.getDepth()
+           || checkpoint.getWidth() != field.getWidth()) {
+            throw new IOException("Checkpoint is of a " + checkpoint.getDepth() + "x"
+                                  + checkpoint.getWidth() + " field, not "
+                                  + field.getDepth() + "x" + field.getWidth());
+        }
+        if(!checkpoint.getParameters().equals(parameters)) {
+            throw new IOException("Checkpoint was saved with other parameters");
+        }
+        clearPopulations();
+        field.clear();  
+        bindRandom();
+        try {
+            checkpoint.restore(field, populations, parameters);
+        }  
+        finally {
+            unbindRandom();
+        }
+        step = checkpoint.getStep();
+        events.setCounts(stats);
+        showStatus();
+    }  
   
-        // Show the starting state in the view.  
+    /**
+     * Create a simulation resumed from a checkpoint, with a field of the
+     * size and parameters that were saved, and a random generator of its
+     * own with the saved seed, so that it goes on as the saved simulation
+     * would have, on one thread or on many.
+     * @param file The checkpoint file.
+     * @param headless If true, no view is created.
+     * @return The resumed simulation.
+     * @throws IOException If the checkpoint cannot be read or is damaged.
+     */
+    public static Simulator fromCheckpoint(Path file, boolean headless) throws IOException
+    {
+        Checkpoint checkpoint = Checkpoint.open(file);
+        long seed = checkpoint.getSeed();
+        // The field is left empty, as there is no need to populate it first.
+        Simulator simulator = new Simulator(checkpoint.getDepth(), checkpoint.getWidth(),
+                                            headless, new RestorableRandom(seed), seed,
+                                            checkpoint.getParameters());
+        simulator.resume(file);
+        return simulator;
+    }
   
-        view.showStatus(step, field);  
+    /**  
+     * Determine whether the simulation should continue to run.
+     * @return true If there is more than one species alive.
+     */  
+    public boolean isViable()
+    {  
+        return stats.isViable();
+    }  
   
+    /**
+     * @return The seed of the simulation's random generator.
+     */
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    /**
+     * @return The figures governing the simulation.
+     */
+    public Parameters getParameters()
+    {
+        return parameters;
+    }
+
+    /**
+     * @return The current step of the simulation.
+     */
+    public int getStep()
+    {
+        return step;
+    }
+
+    /**
+     * @return The field being simulated.
+     */
+    public Field getField()
+    {
+        return field;
+    }
+
+    /**
+     * @return Population statistics for the field. These are kept
+     *         up to date by the field itself.
+     */
+    public FieldStats getStats()
+    {
+        return stats;
+    }
+
+    /**
+     * Bind the simulation's own random generator to the current thread.
+     */
+    private void bindRandom()
+    {
+        Randomizer.bind(random);
+    }
+
+    /**
+     * Undo bindRandom.
+     */
+    private void unbindRandom()
+    {
+        Randomizer.unbind();
+    }
+
+    /**
+     * Tell every observer about the current state of the field.
+     */
+    private void showStatus()
+    {
+        for(SimulatorObserver observer : observers) {
+            observer.showStatus(step, field, stats);
+        }
+    }
+
+    /**
+     * Replace the organisms of a species by the cells of a layer, and
+     * install the layer in the field.
+     * @param layer An empty layer for the species.
+     */
+    private void toLayer(SpeciesLayer layer)
+    {
+        List<Organism> population = populations.get(layer.getSpeciesCode());
+        OrganismPool pool = field.getPool();
+        for(Organism organism : population) {
+            if(organism.isAlive()) {
+                Location location = organism.getLocation();
+                layer.restore(location.getRow(), location.getCol(),
+                              organism.getAge(), organism.getFoodLevel());
+            }
+            pool.release(organism);
+        }
+        population.clear();
+        field.setLayer(layer);
+    }
+
+    /**
+     * Replace the cells of a species' layer, if it has one, by organisms
+     * in the order the cells act, and remove the layer from the field.
+     * Creating the organisms draws random numbers, so the generator is put
+     * back as it was.
+     * @param code The species code.
+     */
+    private void toOrganisms(int code)
+    {
+        SpeciesLayer layer = field.getLayer(code);
+        if(layer == null) {
+            return;
+        }
+        field.removeLayer(code);
+        Species species = parameters.getSpecies(code);
+        List<Organism> population = populations.get(code);
+        int width = field.getWidth();
+        bindRandom();
+        try {
+            long state = Randomizer.getState();
+            for(int cell : layer.getCells()) {
+                int row = cell / width;
+                int col = cell % width;
+                Organism organism = field.getPool().acquire(species, false, field,
+                                                            new Location(row, col));
+                organism.restore(layer.getAge(row, col), layer.getFoodLevel(row, col));
+                population.add(organism);
+            }
+            Randomizer.setState(state);
+        }
+        finally {
+            unbindRandom();
+        }
+        layer.clear();
+    }
+
+    /**
+     * Empty the lists of organisms, returning them all to the pool.
+     */
+    private void clearPopulations()
+    {
+        OrganismPool pool = field.getPool();
+        for(List<Organism> population : populations) {
+            if(population != null) {
+                for(Organism organism : population) {
+                    pool.release(organism);
+                }
+                population.clear();
+            }
+        }
     }  
   
       
@@ -364,42 +846,22 @@ List<Fire> newFire = new ArrayList<>();
         for(int row = 0; row < field.getDepth(); row++) {  
   
             for(int col = 0; col < field.getWidth(); col++) {  
-  
-                if(rand.nextDouble() <= DEER_CREATION_PROBABILITY) {  
-  
-                    Location location = new Location(row, col);  
-  
-                    Deer young = new Deer(true, field, location);  
-  
-                    deer.add(young);  
-  
-                }  
-  
-                else if(rand.nextDouble() <= GRASS_CREATION_PROBABILITY) {  
-  
-                    Location location = new Location(row, col);  
-  
-                    Grass young = new Grass(true, field, location);  
-  
-                    grass.add(young);  
-  
-                }  
-  
-                else if(rand.nextDouble() <= TREE_CREATION_PROBABILITY) {  
-  
-                    Location location = new Location(row, col);  
-  
-                    Tree young = new Tree(true, field, location);  
-  
-                    tree.add(young);  
-  
-                }  
-                else if (rand.nextDouble() <= FIRE_CREATION_PROBABILITY){ 
-                    Location location = new Location (row, col);  
-                     
-                    Fire young = new Fire(true, field, location);  
-                     
-                    fire.add(young);  
+                // Create at most one organism, trying each species in turn.
+                for(int n = 0; n < CREATION_ORDER.length; n++) {
+                    byte code = CREATION_ORDER[n];
+                    if(rand.nextDouble() <= parameters.getCreationProbability(code)) {
+                        SpeciesLayer layer = field.getLayer(code);
+                        if(layer != null) {
+                            layer.create(row, col, true);
+                            break;
+                        }
+                        Location location = new Location(row, col);
+                        Species species = parameters.getSpecies(code);
+                        Organism young = field.getPool().acquire(species, true,
+                                                                 field, location);
+                        populations.get(species.getCode()).add(young);
+                        break;
+                    }
                 } 
   
                 // else leave the location empty.  
@@ -438,4 +900,4 @@ List<Fire> newFire = new ArrayList<>();
   
     }  
   
-}  
\ No newline at end of file
+}  
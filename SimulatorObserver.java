@@ -0,0 +1,19 @@
+/**
+ * An observer of a running simulation. The simulator tells each of its
+ * observers about the state of the field after a reset and after every
+ * step. A graphical view is one kind of observer; a simulation with no
+ * observers runs headless.
+ *
+ * @author David J. Barnes and Michael Kölling
+ * @version 2016.02.29
+ */
+public interface SimulatorObserver
+{
+    /**
+     * Report the current status of the simulation.
+     * @param step Which iteration step it is (0 after a reset).
+     * @param field The field being simulated.
+     * @param stats Population statistics for the field.
+     */
+    void showStatus(int step, Field field, FieldStats stats);
+}
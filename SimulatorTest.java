@@ -0,0 +1,147 @@
+
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The test class SimulatorTest. The sweep that removes the dead from a
+ * species' list and adds the newborns must keep both in their order.
+ *
+ * @author David J. Barnes and Michael Kölling
+ * @version 2016.02.29
+ */
+public class SimulatorTest
+{
+    // The size of the field, and the number of organisms first listed.
+    private static final int DEPTH = 40;
+    private static final int WIDTH = 40;
+    private static final int ORGANISMS = 1000;
+
+    private Field field;
+    private OrganismPool pool;
+    private List<Organism> population;
+    // The next free location, as an index row * WIDTH + col.
+    private int nextCell;
+
+    /**
+     * Default constructor for test class SimulatorTest
+     */
+    public SimulatorTest()
+    {
+    }
+
+    /**
+     * Sets up the test fixture.
+     *
+     * Called before every test case method.
+     */
+    @BeforeEach
+    public void setUp()
+    {
+        Randomizer.bind(new RestorableRandom(3));
+        field = new Field(DEPTH, WIDTH);
+        pool = field.getPool();
+        nextCell = 0;
+        population = create(ORGANISMS);
+    }
+
+    /**
+     * Tears down the test fixture.
+     *
+     * Called after every test case method.
+     */
+    @AfterEach
+    public void tearDown()
+    {
+        Randomizer.unbind();
+    }
+
+    @Test
+    public void testSweepAfterMassDieOff()
+    {
+        List<Organism> expected = new ArrayList<>();
+        for(int index = 0; index < ORGANISMS; index++) {
+            Organism organism = population.get(index);
+            if(index % 97 == 5) {
+                expected.add(organism);
+            }
+            else {
+                organism.setDead();
+            }
+        }
+        List<Organism> newborns = create(30);
+        expected.addAll(newborns);
+
+        Simulator.sweep(population, newborns, pool);
+        assertEquals(expected, population);
+        assertEquals(ORGANISMS - 11, pool.getFreeCount(Species.DEER));
+    }
+
+    @Test
+    public void testSweepWhenAllDie()
+    {
+        for(Organism organism : population) {
+            organism.setDead();
+        }
+        Simulator.sweep(population, new ArrayList<>(), pool);
+        assertTrue(population.isEmpty());
+        assertEquals(ORGANISMS, pool.getFreeCount(Species.DEER));
+    }
+
+    @Test
+    public void testSweepWithMoreNewbornsThanDead()
+    {
+        List<Organism> expected = new ArrayList<>(population);
+        Organism dead = expected.remove(10);
+        dead.setDead();
+        List<Organism> newborns = create(50);
+        expected.addAll(newborns);
+
+        Simulator.sweep(population, newborns, pool);
+        assertEquals(expected, population);
+        assertEquals(1, pool.getFreeCount(Species.DEER));
+    }
+
+    @Test
+    public void testSweepDropsDeadNewborns()
+    {
+        List<Organism> newborns = create(20);
+        List<Organism> expected = new ArrayList<>(population);
+        for(int index = 0; index < newborns.size(); index++) {
+            if(index % 3 == 0) {
+                newborns.get(index).setDead();
+            }
+            else {
+                expected.add(newborns.get(index));
+            }
+        }
+
+        Simulator.sweep(population, newborns, pool);
+        assertEquals(expected, population);
+        assertEquals(7, pool.getFreeCount(Species.DEER));
+        for(Organism organism : population) {
+            assertTrue(organism.isAlive());
+        }
+    }
+
+    /**
+     * Create deer at the next free locations of the field.
+     * @param count The number of deer.
+     * @return The deer, in order of creation.
+     */
+    private List<Organism> create(int count)
+    {
+        Species deer = Species.get(Species.DEER);
+        List<Organism> organisms = new ArrayList<>();
+        for(int n = 0; n < count; n++) {
+            Location location = new Location(nextCell / WIDTH, nextCell % WIDTH);
+            organisms.add(pool.acquire(deer, false, field, location));
+            nextCell++;
+        }
+        return organisms;
+    }
+}
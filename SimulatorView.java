@@ -1,8 +1,10 @@
 import java.awt.*; 
 import java.awt.event.*; 
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.swing.*; 
-import java.util.LinkedHashMap; 
-import java.util.Map; 
   
 /** 
 * A graphical view of the simulation grid. 
@@ -11,26 +13,52 @@ import java.util.Map;
 * Colors for each type of species can be defined using the 
 * setColor method. 
 *  
+* The view shows a window onto the field, which can be dragged with the
+* mouse and zoomed with the mouse wheel. Zoomed in, each location is a
+* square of pixels; zoomed out, each pixel stands for a square of
+* locations and shows a summary of them from a FieldPyramid. The colors
+* of the visible pixels are written straight into the pixel array of an
+* image the size of the window, so drawing takes time in proportion to
+* the size of the window, not of the field.
+*
+* The simulation does not wait for the view to be drawn. At each step it
+* copies the species codes of the changed chunks into one of three
+* snapshots and publishes it; a timer on the event dispatch thread draws
+* the latest published snapshot FRAME_RATE times a second. A snapshot
+* published while the previous one has not yet been drawn replaces it,
+* so a fast simulation skips frames rather than slowing down.
+*
+* The view is one possible observer of a simulation; a simulator
+* can equally be run without it.
+*
 * @author David J. Barnes and Michael Kölling 
 * @version 2016.02.29 
 */ 
-public class SimulatorView extends JFrame 
+public class SimulatorView extends JFrame implements SimulatorObserver
 { 
-    // Colors used for empty locations. 
-    private static final Color EMPTY_COLOR = Color.white; 
-  
-    // Color used for objects that have no defined color. 
-    private static final Color UNKNOWN_COLOR = Color.gray; 
+    // Color used beyond the edges of the field.
+    private static final Color OUTSIDE_COLOR = Color.lightGray;
   
+    // The number of times a second the view is drawn.
+    private static final int FRAME_RATE = 30;
+
     private final String STEP_PREFIX = "Step: "; 
     private final String POPULATION_PREFIX = "Population: "; 
     private JLabel stepLabel, population; 
     private FieldView fieldView; 
      
-    // A map for storing colors for participants in the simulation 
-    private Map<Class, Color> colors; 
-    // A statistics object computing and storing simulation information 
-    private FieldStats stats; 
+    // The colors for participants in the simulation.
+    private final Palette palette;
+    // The three snapshots of the field.
+    private final Snapshot[] snapshots;
+    // Passes snapshots from the simulation thread to the event dispatch thread.
+    private final Handoff handoff;
+    // The snapshot being filled, kept by the simulation thread.
+    private Snapshot filling;
+    // The snapshot last drawn, kept by the event dispatch thread.
+    private Snapshot shown;
+    // Summaries of the shown snapshot for drawing zoomed out.
+    private FieldPyramid pyramid;
   
     /** 
      * Create a view of the given width and height. 
@@ -39,8 +67,17 @@ public class SimulatorView extends JFrame
      */ 
     public SimulatorView(int height, int width) 
     { 
-        stats = new FieldStats(); 
-        colors = new LinkedHashMap<>(); 
+        palette = new Palette();
+        int chunks = ((height + Field.CHUNK_SIZE - 1) >> Field.CHUNK_SHIFT)
+                     * ((width + Field.CHUNK_SIZE - 1) >> Field.CHUNK_SHIFT);
+        snapshots = new Snapshot[] {
+            new Snapshot(height * width, chunks), new Snapshot(height * width, chunks),
+            new Snapshot(height * width, chunks)
+        };
+        filling = snapshots[0];
+        handoff = new Handoff(snapshots[1]);
+        shown = snapshots[2];
+        pyramid = new FieldPyramid(shown.codes, height, width);
   
         setTitle("Ecosystem Simulation"); 
         stepLabel = new JLabel(STEP_PREFIX, JLabel.CENTER); 
@@ -56,6 +93,8 @@ public class SimulatorView extends JFrame
         contents.add(population, BorderLayout.SOUTH); 
         pack(); 
         setVisible(true); 
+
+        new Timer(1000 / FRAME_RATE, event -> drawFrame()).start();
     } 
      
     /** 
@@ -63,67 +102,163 @@ public class SimulatorView extends JFrame
      * @param organismClass The organism's Class object. 
      * @param color The color to be used for the given class. 
      */ 
-    public void setColor(Class organismClass, Color color) 
-    { 
-        colors.put(organismClass, color); 
-    } 
-  
-    /** 
-     * @return The color to be used for a given class of organism. 
-     */ 
-    private Color getColor(Class organismClass) 
+    public void setColor(Class<? extends Organism> organismClass, Color color) 
     { 
-        Color col = colors.get(organismClass); 
-        if(col == null) { 
-            // no color defined for this class 
-            return UNKNOWN_COLOR; 
-        } 
-        else { 
-            return col; 
+        if(palette.setColor(organismClass, color)) {
+            fieldView.repaint();
         } 
     } 
   
     /** 
-     * Show the current status of the field. 
+     * Publish the current status of the field, to be drawn at the next
+     * frame. This is called on the simulation thread, and copies only the
+     * chunks of the field that have changed since the snapshot being
+     * filled was last published.
      * @param step Which iteration step it is. 
      * @param field The field whose status is to be displayed. 
+     * @param stats Population statistics for the field.
      */ 
-    public void showStatus(int step, Field field) 
+    public void showStatus(int step, Field field, FieldStats stats)
     { 
+        for(int n = 0; n < field.getChangedChunkCount(); n++) {
+            int chunkIndex = field.getChangedChunk(n);
+            for(Snapshot snapshot : snapshots) {
+                snapshot.stale[chunkIndex] = true;
+            }
+        }
+
+        Snapshot snapshot = filling;
+        for(int chunkIndex = 0; chunkIndex < snapshot.stale.length; chunkIndex++) {
+            if(snapshot.stale[chunkIndex]) {
+                field.copyChunkCodes(chunkIndex, snapshot.codes);
+                snapshot.stale[chunkIndex] = false;
+                snapshot.changed[chunkIndex] = true;
+            }
+        }
+        snapshot.step = step;
+        snapshot.populationDetails = stats.getPopulationDetails();
+        filling = handoff.publish(snapshot);
+    }
+
+    /**
+     * Show the latest published snapshot, if there is a new one, and
+     * update the pyramid from its changed chunks. This is called by the
+     * frame timer on the event dispatch thread.
+     */
+    private void drawFrame()
+    {
+        Snapshot snapshot = handoff.take(shown);
+        if(snapshot == null) {
+            return;
+        }
         if(!isVisible()) { 
             setVisible(true); 
         } 
-             
-        stepLabel.setText(STEP_PREFIX + step); 
-        stats.reset(); 
-         
-        fieldView.preparePaint(); 
-  
-        for(int row = 0; row < field.getDepth(); row++) { 
-            for(int col = 0; col < field.getWidth(); col++) { 
-                Object organism = field.getObjectAt(row, col); 
-                if(organism != null) { 
-                    stats.incrementCount(organism.getClass()); 
-                    fieldView.drawMark(col, row, getColor(organism.getClass())); 
-                } 
-                else { 
-                    fieldView.drawMark(col, row, EMPTY_COLOR); 
-                } 
+        stepLabel.setText(STEP_PREFIX + snapshot.step);
+        population.setText(POPULATION_PREFIX + snapshot.populationDetails);
+
+        // The snapshot shown until now has been handed back and may already
+        // be filling again, so it stops being level 0 of the pyramid at once,
+        // even if no chunk has changed.
+        pyramid.setCodes(snapshot.codes);
+        for(int chunkIndex = 0; chunkIndex < snapshot.changed.length; chunkIndex++) {
+            if(snapshot.changed[chunkIndex]) {
+                pyramid.update(snapshot.codes, chunkIndex);
+                snapshot.changed[chunkIndex] = false;
             } 
         } 
-        stats.countFinished(); 
-  
-        population.setText(POPULATION_PREFIX + stats.getPopulationDetails(field)); 
+        shown = snapshot;
         fieldView.repaint(); 
     } 
   
     /** 
-     * Determine whether the simulation should continue to run. 
-     * @return true If there is more than one species alive. 
+     * A copy of the species codes of the field at one step. A snapshot is
+     * filled only on the simulation thread and shown only on the event
+     * dispatch thread, and passes between them through a Handoff, so it
+     * is never filled while it is shown. The shown snapshot is level 0
+     * of the pyramid until the next one is taken.
      */ 
-    public boolean isViable(Field field) 
+    static class Snapshot
     { 
-        return stats.isViable(field); 
+        // The species code of every location, in row order.
+        final byte[] codes;
+        // Chunks whose codes here are out of date, by chunk index.
+        // Used only on the simulation thread.
+        final boolean[] stale;
+        // Chunks copied since the snapshot was last shown, by chunk index.
+        final boolean[] changed;
+        // The step and population details of the snapshot.
+        int step;
+        String populationDetails;
+        // Whether the snapshot has been published and not yet taken.
+        boolean published;
+
+        /**
+         * Create a snapshot in which every chunk is out of date.
+         * @param locations The number of locations in the field.
+         * @param chunks The number of chunks in the field.
+         */
+        Snapshot(int locations, int chunks)
+        {
+            codes = new byte[locations];
+            stale = new boolean[chunks];
+            changed = new boolean[chunks];
+            Arrays.fill(stale, true);
+        }
+    }
+
+    /**
+     * Passes snapshots from the simulation thread to the event dispatch
+     * thread. Each thread keeps one snapshot, and a third lies between
+     * them; a thread that wants a new one swaps its own for the one in
+     * between, so neither thread ever waits for the other or is left
+     * without a snapshot.
+     */
+    static class Handoff
+    {
+        // The snapshot between the two threads.
+        private final AtomicReference<Snapshot> between;
+
+        /**
+         * Create a handoff holding an unpublished snapshot.
+         * @param first The snapshot to hold.
+         */
+        Handoff(Snapshot first)
+        {
+            between = new AtomicReference<>(first);
+        }
+
+        /**
+         * Publish a filled snapshot, replacing any that has not been taken.
+         * Called on the simulation thread.
+         * @param filled The snapshot to publish.
+         * @return The snapshot to fill next. It may be one published earlier
+         *         and never taken, so it keeps its changed chunks.
+         */
+        Snapshot publish(Snapshot filled)
+        {
+            filled.published = true;
+            return between.getAndSet(filled);
+        }
+
+        /**
+         * Take the latest published snapshot, if there is one, handing
+         * back the one shown until now. Called on the event dispatch thread.
+         * @param shown The snapshot shown until now.
+         * @return The latest published snapshot, or null if none has been
+         *         published since the last one taken.
+         */
+        Snapshot take(Snapshot shown)
+        {
+            if(!between.get().published) {
+                return null;
+            }
+            // Only the simulation thread can change the snapshot in between
+            // since it was looked at, and only for another published one.
+            Snapshot snapshot = between.getAndSet(shown);
+            snapshot.published = false;
+            return snapshot;
+        }
     } 
      
     /** 
@@ -137,21 +272,73 @@ public class SimulatorView extends JFrame
     private class FieldView extends JPanel 
     { 
         private final int GRID_VIEW_SCALING_FACTOR = 6; 
-  
+        // The largest size the view asks for.
+        private final int MAX_VIEW_WIDTH = 900, MAX_VIEW_HEIGHT = 700;
+        // The most pixels across a location when zoomed in.
+        private final int MAX_PIXELS_PER_LOCATION = 32;
+
         private int gridWidth, gridHeight; 
-        private int xScale, yScale; 
-        Dimension size; 
-        private Graphics g; 
-        private Image fieldImage; 
-  
+        // The location at the top left of the view.
+        private int originRow, originCol;
+        // The number of pixels across each location when zoomed in, or 1.
+        private int pixelsPerLocation;
+        // The pyramid level drawn; each pixel stands for a square of
+        // 2 to the power level locations across.
+        private int level;
+        // Where a drag started, and the origin at the time.
+        private int dragX, dragY, dragRow, dragCol;
+        // The image of the view, and its pixels by row then column.
+        private BufferedImage viewImage;
+        private int[] pixels;
+
         /** 
-         * Create a new FieldView component. 
+         * Create a new FieldView component, zoomed so that the whole
+         * field fits its preferred size.
          */ 
         public FieldView(int height, int width) 
         { 
             gridHeight = height; 
             gridWidth = width; 
-            size = new Dimension(0, 0); 
+            pixelsPerLocation = GRID_VIEW_SCALING_FACTOR;
+            Dimension size = getPreferredSize();
+            while(locationsAcross(size.height) < gridHeight
+                  || locationsAcross(size.width) < gridWidth) {
+                if(!zoomOut()) {
+                    break;
+                }
+            }
+
+            MouseAdapter mouse = new MouseAdapter() {
+                public void mousePressed(MouseEvent e)
+                {
+                    dragX = e.getX();
+                    dragY = e.getY();
+                    dragRow = originRow;
+                    dragCol = originCol;
+                }
+
+                public void mouseDragged(MouseEvent e)
+                {
+                    originRow = dragRow - locationsAcross(e.getY() - dragY);
+                    originCol = dragCol - locationsAcross(e.getX() - dragX);
+                    repaint();
+                }
+
+                public void mouseWheelMoved(MouseWheelEvent e)
+                {
+                    // Keep the location under the mouse where it is.
+                    int row = originRow + locationsAcross(e.getY());
+                    int col = originCol + locationsAcross(e.getX());
+                    if(e.getWheelRotation() < 0 ? zoomIn() : zoomOut()) {
+                        originRow = row - locationsAcross(e.getY());
+                        originCol = col - locationsAcross(e.getX());
+                        repaint();
+                    }
+                }
+            };
+            addMouseListener(mouse);
+            addMouseMotionListener(mouse);
+            addMouseWheelListener(mouse);
         } 
   
         /** 
@@ -159,57 +346,99 @@ public class SimulatorView extends JFrame
          */ 
         public Dimension getPreferredSize() 
         { 
-            return new Dimension(gridWidth * GRID_VIEW_SCALING_FACTOR, 
-                                 gridHeight * GRID_VIEW_SCALING_FACTOR); 
-        } 
-  
-        /** 
-         * Prepare for a new round of painting. Since the component 
-         * may be resized, compute the scaling factor again. 
-         */ 
-        public void preparePaint() 
-        { 
-            if(! size.equals(getSize())) {  // if the size has changed... 
-                size = getSize(); 
-                fieldImage = fieldView.createImage(size.width, size.height); 
-                g = fieldImage.getGraphics(); 
-  
-                xScale = size.width / gridWidth; 
-                if(xScale < 1) { 
-                    xScale = GRID_VIEW_SCALING_FACTOR; 
-                } 
-                yScale = size.height / gridHeight; 
-                if(yScale < 1) { 
-                    yScale = GRID_VIEW_SCALING_FACTOR; 
-                } 
-            } 
-        } 
-         
-        /** 
-         * Paint on grid location on this field in a given color. 
-         */ 
-        public void drawMark(int x, int y, Color color) 
-        { 
-            g.setColor(color); 
-            g.fillRect(x * xScale, y * yScale, xScale-1, yScale-1); 
+            return new Dimension(Math.min(gridWidth * GRID_VIEW_SCALING_FACTOR, MAX_VIEW_WIDTH),
+                                 Math.min(gridHeight * GRID_VIEW_SCALING_FACTOR,
+                                          MAX_VIEW_HEIGHT));
         } 
   
         /** 
-         * The field view component needs to be redisplayed. Copy the 
-         * internal image to screen. 
+         * Draw the visible part of the shown snapshot, one pixel at a time,
+         * and copy it to the screen.
          */ 
         public void paintComponent(Graphics g) 
         { 
-            if(fieldImage != null) { 
-                Dimension currentSize = getSize(); 
-                if(size.equals(currentSize)) { 
-                    g.drawImage(fieldImage, 0, 0, null); 
+            int viewWidth = getWidth();
+            int viewHeight = getHeight();
+            if(viewWidth <= 0 || viewHeight <= 0) {
+                return;
+            }
+            if(viewImage == null || viewImage.getWidth() != viewWidth
+                                 || viewImage.getHeight() != viewHeight) {
+                viewImage = new BufferedImage(viewWidth, viewHeight, BufferedImage.TYPE_INT_RGB);
+                pixels = ((DataBufferInt) viewImage.getRaster().getDataBuffer()).getData();
+            }
+            originRow = Math.max(0, Math.min(originRow,
+                                             gridHeight - locationsAcross(viewHeight)));
+            originCol = Math.max(0, Math.min(originCol,
+                                             gridWidth - locationsAcross(viewWidth)));
+
+            byte[] codes = pyramid.getCodes(level);
+            int levelDepth = pyramid.getDepth(level);
+            int levelWidth = pyramid.getWidth(level);
+            int top = originRow >> level;
+            int left = originCol >> level;
+            int[] colors = palette.getColors();
+            int outside = OUTSIDE_COLOR.getRGB();
+            for(int y = 0; y < viewHeight; y++) {
+                int row = top + y / pixelsPerLocation;
+                int pixelStart = y * viewWidth;
+                if(row >= levelDepth) {
+                    Arrays.fill(pixels, pixelStart, pixelStart + viewWidth, outside);
                 } 
                 else { 
-                    // Rescale the previous image. 
-                    g.drawImage(fieldImage, 0, 0, currentSize.width, currentSize.height, null); 
+                    int codeStart = row * levelWidth;
+                    for(int x = 0; x < viewWidth; x++) {
+                        int col = left + x / pixelsPerLocation;
+                        pixels[pixelStart + x] = col < levelWidth
+                                                 ? colors[codes[codeStart + col]] : outside;
+                    }
                 } 
             } 
+            g.drawImage(viewImage, 0, 0, null);
+        }
+
+        /**
+         * @return The number of locations across a length in pixels.
+         */
+        private int locationsAcross(int length)
+        {
+            return (length / pixelsPerLocation) << level;
+        }
+
+        /**
+         * Show more detail, if possible.
+         * @return true if the view was zoomed in.
+         */
+        private boolean zoomIn()
+        {
+            if(level > 0) {
+                level--;
+            }
+            else if(pixelsPerLocation < MAX_PIXELS_PER_LOCATION) {
+                pixelsPerLocation = Math.min(pixelsPerLocation * 2, MAX_PIXELS_PER_LOCATION);
+            }
+            else {
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Show less detail, if possible.
+         * @return true if the view was zoomed out.
+         */
+        private boolean zoomOut()
+        {
+            if(pixelsPerLocation > 1) {
+                pixelsPerLocation /= 2;
+            }
+            else if(level < pyramid.getLevels() - 1) {
+                level++;
+            }
+            else {
+                return false;
+            }
+            return true;
         } 
     } 
-} 
\ No newline at end of file
+} 
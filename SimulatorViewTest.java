@@ -0,0 +1,130 @@
+
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The test class SimulatorViewTest. The handoff of snapshots between the
+ * simulation thread and the event dispatch thread is tested on its own,
+ * without opening a window.
+ *
+ * @author David J. Barnes and Michael Kölling
+ * @version 2016.02.29
+ */
+public class SimulatorViewTest
+{
+    // The size of each snapshot.
+    private static final int LOCATIONS = 4096;
+    private static final int CHUNKS = 1;
+
+    private SimulatorView.Snapshot first, second, third;
+    private SimulatorView.Handoff handoff;
+
+    /**
+     * Default constructor for test class SimulatorViewTest
+     */
+    public SimulatorViewTest()
+    {
+    }
+
+    /**
+     * Sets up the test fixture.
+     *
+     * Called before every test case method.
+     */
+    @BeforeEach
+    public void setUp()
+    {
+        first = new SimulatorView.Snapshot(LOCATIONS, CHUNKS);
+        second = new SimulatorView.Snapshot(LOCATIONS, CHUNKS);
+        third = new SimulatorView.Snapshot(LOCATIONS, CHUNKS);
+        handoff = new SimulatorView.Handoff(second);
+    }
+
+    /**
+     * Tears down the test fixture.
+     *
+     * Called after every test case method.
+     */
+    @AfterEach
+    public void tearDown()
+    {
+    }
+
+    @Test
+    public void testNothingToTakeAtFirst()
+    {
+        assertNull(handoff.take(third));
+    }
+
+    @Test
+    public void testPublishAndTake()
+    {
+        // The simulation thread fills first while the view shows third.
+        SimulatorView.Snapshot filling = handoff.publish(first);
+        assertSame(second, filling);
+        assertSame(first, handoff.take(third));
+        assertFalse(first.published);
+        assertNull(handoff.take(first));
+
+        // The snapshot shown until then is handed back for filling.
+        filling = handoff.publish(filling);
+        assertSame(third, filling);
+        assertSame(second, handoff.take(first));
+    }
+
+    @Test
+    public void testUntakenSnapshotIsReplaced()
+    {
+        SimulatorView.Snapshot filling = handoff.publish(first);
+        filling = handoff.publish(filling);
+        // The first was never taken, so it is filled again.
+        assertSame(first, filling);
+        assertSame(second, handoff.take(third));
+        assertNull(handoff.take(second));
+    }
+
+    @Test
+    public void testConcurrentHandoff() throws InterruptedException
+    {
+        int steps = 200000;
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread simulation = new Thread(() -> {
+            SimulatorView.Snapshot filling = first;
+            for(int step = 1; step <= steps; step++) {
+                Arrays.fill(filling.codes, (byte) step);
+                filling.step = step;
+                filling = handoff.publish(filling);
+                if(filling == null) {
+                    failure.set(new AssertionError("No snapshot to fill at step " + step));
+                    return;
+                }
+            }
+        });
+        simulation.start();
+
+        SimulatorView.Snapshot shown = third;
+        int lastStep = 0;
+        boolean finished = false;
+        while(!finished) {
+            finished = !simulation.isAlive();
+            SimulatorView.Snapshot snapshot = handoff.take(shown);
+            if(snapshot != null) {
+                assertNotSame(shown, snapshot);
+                assertTrue(snapshot.step > lastStep, "Step " + snapshot.step + " after " + lastStep);
+                for(byte code : snapshot.codes) {
+                    assertEquals((byte) snapshot.step, code, "Torn snapshot");
+                }
+                lastStep = snapshot.step;
+                shown = snapshot;
+            }
+        }
+        simulation.join();
+        assertNull(failure.get());
+        assertEquals(steps, lastStep);
+    }
+}
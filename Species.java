@@ -0,0 +1,308 @@
+/**
+ * The kinds of organism in the simulation. Each species has a numeric
+ * code and a descriptor holding the characteristics shared by all its
+ * members: how they age and breed, how hungry they get, and which other
+ * species they eat. The descriptors are kept in a registry indexed by
+ * code, and who eats whom is a table indexed by predator and prey code,
+ * so organisms look up their behaviour rather than asking which class
+ * their neighbours belong to.
+ *
+ * The field keeps one code per location in a dense array so that scans,
+ * neighbour tests and censuses can work on the codes alone, without
+ * following a reference to each organism.
+ *
+ * The registered descriptors hold the default figures. A simulation may
+ * use descriptors of its own instead, derived from them by Parameters.
+ *
+ * To add a species, give it a code below, raise COUNT, write a subclass
+ * of Organism for it and register a descriptor in the static block.
+ *
+ * @author David J. Barnes and Michael Kölling
+ * @version 2016.02.29
+ */
+public class Species
+{
+    // Code of an empty location.
+    public static final byte EMPTY = 0;
+    // Codes of the organisms in the simulation.
+    public static final byte GRASS = 1;
+    public static final byte DEER = 2;
+    public static final byte TREE = 3;
+    public static final byte FIRE = 4;
+    // Code of any object that is not one of the organisms above.
+    public static final byte OTHER = 5;
+    // The number of codes, including EMPTY and OTHER.
+    public static final int COUNT = 6;
+
+    // The descriptor of each species, indexed by code.
+    private static final Species[] registry = new Species[COUNT];
+    // Display names, indexed by code.
+    private static final String[] NAMES = {
+        "Empty", "Grass", "Deer", "Tree", "Fire", "Other"
+    };
+
+    static {
+        // Grass does not need food.
+        register(new Species(GRASS, Grass.class, Grass::new, 5, 40, 0.12, 4, 0, false));
+        register(new Species(DEER, Deer.class, Deer::new, 15, 150, 0.08, 2, 9, false));
+        register(new Species(TREE, Tree.class, Tree::new, 0, 4000, 1.0, 1, 9, false));
+        // New fire starts at a random age.
+        register(new Species(FIRE, Fire.class, Fire::new, 2, 4, 1.0, 1, 9, true));
+
+        get(DEER).setPrey(GRASS, 1.0);
+        get(TREE).setPrey(GRASS, 1.0);
+        // Fire could consume trees and grass, but at present never does.
+        get(FIRE).setPrey(TREE, 0.0);
+        get(FIRE).setPrey(GRASS, 0.0);
+    }
+
+    /**
+     * Creates the organisms of a species.
+     */
+    public interface Factory
+    {
+        /**
+         * Create an organism.
+         * @param species The species of the organism.
+         * @param randomAge If true, the organism will have a random age.
+         * @param field The field currently occupied.
+         * @param location The location within the field.
+         * @return The new organism.
+         */
+        Organism create(Species species, boolean randomAge, Field field, Location location);
+    }
+
+    // The code of this species.
+    private final byte code;
+    // The class of this species' organisms.
+    private final Class<? extends Organism> organismClass;
+    // Creates organisms of this species.
+    private final Factory factory;
+    // The age at which an organism can start to breed.
+    private final int breedingAge;
+    // The age to which an organism can live.
+    private final int maxAge;
+    // The likelihood of an organism breeding.
+    private final double breedingProbability;
+    // The maximum number of births.
+    private final int maxLitterSize;
+    // The food value of one meal. In effect, this is the number of steps
+    // an organism can go before it has to eat again. Zero if it never eats.
+    private final int foodValue;
+    // Whether newborns start at a random age rather than zero.
+    private final boolean newbornsHaveRandomAge;
+    // Whether this species eats each other species, indexed by prey code.
+    private final boolean[] eats;
+    // The likelihood that a meal of each prey succeeds, indexed by prey code.
+    private final double[] mealProbability;
+
+    /**
+     * Describe a species.
+     * @param code The species code.
+     * @param organismClass The class of its organisms.
+     * @param factory Creates its organisms, usually a constructor reference.
+     * @param breedingAge The age at which an organism can start to breed.
+     * @param maxAge The age to which an organism can live.
+     * @param breedingProbability The likelihood of an organism breeding.
+     * @param maxLitterSize The maximum number of births.
+     * @param foodValue The number of steps one meal lasts; 0 if it never eats.
+     * @param newbornsHaveRandomAge Whether newborns start at a random age.
+     */
+    public Species(byte code, Class<? extends Organism> organismClass, Factory factory,
+                   int breedingAge, int maxAge, double breedingProbability,
+                   int maxLitterSize, int foodValue, boolean newbornsHaveRandomAge)
+    {
+        this.code = code;
+        this.organismClass = organismClass;
+        this.factory = factory;
+        this.breedingAge = breedingAge;
+        this.maxAge = maxAge;
+        this.breedingProbability = breedingProbability;
+        this.maxLitterSize = maxLitterSize;
+        this.foodValue = foodValue;
+        this.newbornsHaveRandomAge = newbornsHaveRandomAge;
+        eats = new boolean[COUNT];
+        mealProbability = new double[COUNT];
+    }
+
+    /**
+     * Add a species to the registry, replacing any with the same code.
+     * @param species The species to add.
+     */
+    public static void register(Species species)
+    {
+        registry[species.getCode()] = species;
+    }
+
+    /**
+     * Return the registered species with the given code.
+     * @param code The species code.
+     * @return The species, or null if none is registered with that code.
+     */
+    public static Species get(int code)
+    {
+        return registry[code];
+    }
+
+    /**
+     * Return the species code of the given organism.
+     * @param organism The organism, or null for an empty location.
+     * @return The code of the organism's species.
+     */
+    public static byte codeOf(Object organism)
+    {
+        if(organism == null) {
+            return EMPTY;
+        }
+        else if(organism instanceof Organism) {
+            return ((Organism) organism).getSpeciesCode();
+        }
+        else {
+            return OTHER;
+        }
+    }
+
+    /**
+     * Return the species code used for instances of the given class.
+     * @param organismClass The organism's Class object.
+     * @return The code of that species.
+     */
+    public static byte codeOf(Class<?> organismClass)
+    {
+        for(Species species : registry) {
+            if(species != null && species.organismClass == organismClass) {
+                return species.code;
+            }
+        }
+        return OTHER;
+    }
+
+    /**
+     * @return The display name of the species with the given code.
+     */
+    public static String getName(int code)
+    {
+        return NAMES[code];
+    }
+
+    /**
+     * Create an organism of this species.
+     * @param randomAge If true, the organism will have a random age.
+     * @param field The field currently occupied.
+     * @param location The location within the field.
+     * @return The new organism.
+     */
+    public Organism create(boolean randomAge, Field field, Location location)
+    {
+        return factory.create(this, randomAge, field, location);
+    }
+
+    /**
+     * Return a species like this one, of the same code and class, but
+     * with other figures and, as yet, no prey. It is not registered.
+     * @param breedingAge The age at which an organism can start to breed.
+     * @param maxAge The age to which an organism can live.
+     * @param breedingProbability The likelihood of an organism breeding.
+     * @param maxLitterSize The maximum number of births.
+     * @param foodValue The number of steps one meal lasts; 0 if it never eats.
+     * @return The new species.
+     */
+    public Species derive(int breedingAge, int maxAge, double breedingProbability,
+                          int maxLitterSize, int foodValue)
+    {
+        return new Species(code, organismClass, factory, breedingAge, maxAge,
+                           breedingProbability, maxLitterSize, foodValue,
+                           newbornsHaveRandomAge);
+    }
+
+    /**
+     * Let this species eat another.
+     * @param prey The code of the species eaten.
+     * @param probability The likelihood that an attempt to eat it succeeds.
+     */
+    public void setPrey(byte prey, double probability)
+    {
+        eats[prey] = true;
+        mealProbability[prey] = probability;
+    }
+
+    /**
+     * @return Whether this species eats the species with the given code.
+     */
+    public boolean eats(int prey)
+    {
+        return eats[prey];
+    }
+
+    /**
+     * @return The likelihood that an attempt to eat the given species succeeds.
+     */
+    public double getMealProbability(int prey)
+    {
+        return mealProbability[prey];
+    }
+
+    /**
+     * @return Whether this species eats anything at all.
+     */
+    public boolean needsFood()
+    {
+        return foodValue > 0;
+    }
+
+    /**
+     * @return The code of this species.
+     */
+    public byte getCode()
+    {
+        return code;
+    }
+
+    /**
+     * @return The age at which an organism can start to breed.
+     */
+    public int getBreedingAge()
+    {
+        return breedingAge;
+    }
+
+    /**
+     * @return The age to which an organism can live.
+     */
+    public int getMaxAge()
+    {
+        return maxAge;
+    }
+
+    /**
+     * @return The likelihood of an organism breeding.
+     */
+    public double getBreedingProbability()
+    {
+        return breedingProbability;
+    }
+
+    /**
+     * @return The maximum number of births.
+     */
+    public int getMaxLitterSize()
+    {
+        return maxLitterSize;
+    }
+
+    /**
+     * @return The number of steps one meal lasts; 0 if the species never eats.
+     */
+    public int getFoodValue()
+    {
+        return foodValue;
+    }
+
+    /**
+     * @return Whether newborns start at a random age rather than zero.
+     */
+    public boolean newbornsHaveRandomAge()
+    {
+        return newbornsHaveRandomAge;
+    }
+}
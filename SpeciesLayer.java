@@ -0,0 +1,81 @@
+/**
+ * A species simulated as a layer of cells rather than as one Organism
+ * object per member. The layer keeps the state of each of its cells in
+ * arrays of its own and puts its species code, with no occupant, into
+ * the field at each of them, so that scans, neighbour tests and counts
+ * see its cells just as they see organisms. A cell of a layer is removed
+ * only through its layer.
+ *
+ * A field holds at most one layer per species code; see Field.setLayer.
+ * Cells are indexed by row * width + col.
+ *
+ * @author David J. Barnes and Michael Kölling
+ * @version 2016.02.29
+ */
+public interface SpeciesLayer
+{
+    /**
+     * @return The code of the species the layer simulates.
+     */
+    byte getSpeciesCode();
+
+    /**
+     * @return The number of cells in the layer.
+     */
+    int size();
+
+    /**
+     * Add a cell to the layer, as an organism of its species would be
+     * created there, drawing the same random numbers. Neither a birth nor
+     * a death is recorded.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @param randomAge If true, the cell will have a random age.
+     */
+    void create(int row, int col, boolean randomAge);
+
+    /**
+     * Add a cell to the layer with a given age and food level, as when it
+     * is restored from a checkpoint.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @param age The age of the cell.
+     * @param foodLevel The food level of the cell.
+     */
+    void restore(int row, int col, int age, int foodLevel);
+
+    /**
+     * Remove a cell from the layer and the field, as when it is eaten,
+     * recording a death.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     */
+    void remove(int row, int col);
+
+    /**
+     * @return The age of the cell at the given location.
+     */
+    int getAge(int row, int col);
+
+    /**
+     * @return The food level of the cell at the given location.
+     */
+    int getFoodLevel(int row, int col);
+
+    /**
+     * @return The cell indexes of the cells of the layer, in the order in
+     *         which they act. Restoring cells in this order keeps it.
+     */
+    int[] getCells();
+
+    /**
+     * Run one step of the species over the whole layer.
+     */
+    void step();
+
+    /**
+     * Forget every cell, as when the field is cleared. The field itself
+     * is not changed.
+     */
+    void clear();
+}
@@ -0,0 +1,395 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Measures where the time of each simulation step goes. A step is split
+ * into phases, such as the turn of each species, the merging of the
+ * newborns and the reporting to observers, and for each phase the
+ * metrics record its wall-clock time, the organisms it processed, the
+ * births and deaths during it and the bytes allocated by the thread
+ * running it.
+ *
+ * Totals are kept since the metrics were created or reset, and the
+ * times of the last WINDOW samples of each phase are kept for the
+ * median, 99th percentile and latency histogram. The metrics can be
+ * registered as an MBean so that a live run can be watched with the
+ * standard JVM tools. While they are switched off, a simulator pays only
+ * one test per phase for them.
+ *
+ * The phases are measured on the thread running the step, so with a
+ * TiledStepEngine the bytes allocated by its worker threads are not
+ * counted.
+ *
+ * @author David J. Barnes and Michael Kölling
+ * @version 2016.02.29
+ */
+public class StepMetrics implements StepMetricsMBean
+{
+    // The number of recent samples of each phase kept.
+    public static final int WINDOW = 1024;
+    // The number of buckets in a latency histogram.
+    private static final int BUCKETS = 32;
+    private static final double NANOS_PER_MILLI = 1e6;
+    // Measures the bytes allocated by a thread, or null if the JVM cannot.
+    private static final com.sun.management.ThreadMXBean threads = allocationBean();
+    // Numbers the MBeans registered.
+    private static final AtomicInteger registered = new AtomicInteger();
+
+    // The names of the phases.
+    private final String[] phases;
+    // Whether metrics are being collected.
+    private volatile boolean enabled;
+    // The state at the start of the phase being measured.
+    private long startTime, startAllocated;
+    private int startBirths, startDeaths;
+    // The number of steps measured.
+    private long steps;
+    // Totals for each phase, by phase number.
+    private final long[] samples;
+    private final long[] totalNanos;
+    private final long[] maxNanos;
+    private final long[] organisms;
+    private final long[] births;
+    private final long[] deaths;
+    private final long[] allocated;
+    // The times of the recent samples of each phase, in a ring of WINDOW.
+    private final long[][] recent;
+    // The name under which the metrics are registered, or null.
+    private ObjectName name;
+
+    /**
+     * Create enabled metrics for steps made of the given phases.
+     * @param phases The names of the phases, in phase number order.
+     */
+    public StepMetrics(String... phases)
+    {
+        this.phases = phases.clone();
+        samples = new long[phases.length];
+        totalNanos = new long[phases.length];
+        maxNanos = new long[phases.length];
+        organisms = new long[phases.length];
+        births = new long[phases.length];
+        deaths = new long[phases.length];
+        allocated = new long[phases.length];
+        recent = new long[phases.length][WINDOW];
+        enabled = true;
+    }
+
+    /**
+     * Register the metrics with the platform MBean server, under the
+     * name EcoSystem:type=StepMetrics,id=N.
+     * @throws IllegalStateException If they cannot be registered.
+     */
+    public synchronized void register()
+    {
+        if(name != null) {
+            return;
+        }
+        try {
+            ObjectName objectName = new ObjectName("EcoSystem:type=StepMetrics,id="
+                                                   + registered.incrementAndGet());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            name = objectName;
+        }
+        catch(JMException e) {
+            throw new IllegalStateException("Cannot register step metrics", e);
+        }
+    }
+
+    /**
+     * Remove the metrics from the platform MBean server, if registered.
+     */
+    public synchronized void unregister()
+    {
+        if(name == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        }
+        catch(JMException e) {
+            // Already gone.
+        }
+        name = null;
+    }
+
+    /**
+     * @return Whether metrics are being collected.
+     */
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * Start or stop collecting metrics. What was collected is kept.
+     * @param enabled true to collect metrics.
+     */
+    public void setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Note the start of a phase.
+     * @param stats The statistics of the field being simulated. They must
+     *              not be being updated from several threads.
+     */
+    public void startPhase(FieldStats stats)
+    {
+        startBirths = stats.getTotalBirths();
+        startDeaths = stats.getTotalDeaths();
+        startAllocated = allocatedBytes();
+        startTime = System.nanoTime();
+    }
+
+    /**
+     * Record the phase started by the last call of startPhase.
+     * @param phase The number of the phase.
+     * @param processed The number of organisms or cells it processed.
+     * @param stats The statistics of the field being simulated.
+     */
+    public void endPhase(int phase, int processed, FieldStats stats)
+    {
+        long nanos = System.nanoTime() - startTime;
+        long bytes = allocatedBytes() - startAllocated;
+        int born = stats.getTotalBirths() - startBirths;
+        int died = stats.getTotalDeaths() - startDeaths;
+        synchronized(this) {
+            recent[phase][(int) (samples[phase] % WINDOW)] = nanos;
+            samples[phase]++;
+            totalNanos[phase] += nanos;
+            maxNanos[phase] = Math.max(maxNanos[phase], nanos);
+            organisms[phase] += processed;
+            births[phase] += born;
+            deaths[phase] += died;
+            allocated[phase] += bytes;
+        }
+    }
+
+    /**
+     * Note the end of a step.
+     */
+    public synchronized void endStep()
+    {
+        steps++;
+    }
+
+    /**
+     * @return The names of the phases of a step.
+     */
+    public String[] getPhases()
+    {
+        return phases.clone();
+    }
+
+    /**
+     * @return The number of steps measured.
+     */
+    public synchronized long getSteps()
+    {
+        return steps;
+    }
+
+    /**
+     * @return The number of times each phase was measured.
+     */
+    public synchronized long[] getSamples()
+    {
+        return samples.clone();
+    }
+
+    /**
+     * @return The mean time of each phase.
+     */
+    public synchronized double[] getMeanMillis()
+    {
+        double[] means = new double[phases.length];
+        for(int phase = 0; phase < phases.length; phase++) {
+            if(samples[phase] > 0) {
+                means[phase] = totalNanos[phase] / NANOS_PER_MILLI / samples[phase];
+            }
+        }
+        return means;
+    }
+
+    /**
+     * @return The longest time of each phase.
+     */
+    public synchronized double[] getMaxMillis()
+    {
+        double[] maxima = new double[phases.length];
+        for(int phase = 0; phase < phases.length; phase++) {
+            maxima[phase] = maxNanos[phase] / NANOS_PER_MILLI;
+        }
+        return maxima;
+    }
+
+    /**
+     * @return The median time of each phase over its recent samples.
+     */
+    public double[] getMedianMillis()
+    {
+        return recentQuantile(0.5);
+    }
+
+    /**
+     * @return The 99th percentile time of each phase over its recent samples.
+     */
+    public double[] getP99Millis()
+    {
+        return recentQuantile(0.99);
+    }
+
+    /**
+     * @return The number of organisms or cells each phase has processed.
+     */
+    public synchronized long[] getOrganismsProcessed()
+    {
+        return organisms.clone();
+    }
+
+    /**
+     * @return The number of births during each phase.
+     */
+    public synchronized long[] getBirths()
+    {
+        return births.clone();
+    }
+
+    /**
+     * @return The number of deaths during each phase.
+     */
+    public synchronized long[] getDeaths()
+    {
+        return deaths.clone();
+    }
+
+    /**
+     * @return The bytes allocated by the simulating thread during each
+     *         phase, or -1 if the JVM cannot measure them.
+     */
+    public synchronized long[] getAllocatedBytes()
+    {
+        if(threads == null) {
+            long[] unknown = new long[phases.length];
+            Arrays.fill(unknown, -1);
+            return unknown;
+        }
+        return allocated.clone();
+    }
+
+    /**
+     * Return a histogram of the recent times of a phase. Bucket 0 counts
+     * the times under 1 microsecond, and bucket b above 0 those from
+     * 2 to the power b - 1 up to 2 to the power b microseconds.
+     * @param phase The name of the phase.
+     * @return The count in each bucket.
+     * @throws IllegalArgumentException If there is no such phase.
+     */
+    public synchronized long[] getLatencyHistogram(String phase)
+    {
+        int number = Arrays.asList(phases).indexOf(phase);
+        if(number < 0) {
+            throw new IllegalArgumentException("No phase " + phase);
+        }
+        long[] histogram = new long[BUCKETS];
+        int count = (int) Math.min(samples[number], WINDOW);
+        for(int n = 0; n < count; n++) {
+            long micros = recent[number][n] / 1000;
+            int bucket = Long.SIZE - Long.numberOfLeadingZeros(micros);
+            histogram[Math.min(bucket, BUCKETS - 1)]++;
+        }
+        return histogram;
+    }
+
+    /**
+     * @return A table of the metrics, one line per phase.
+     */
+    public String getDetails()
+    {
+        double[] means = getMeanMillis();
+        double[] medians = getMedianMillis();
+        double[] p99s = getP99Millis();
+        double[] maxima = getMaxMillis();
+        long[] processed = getOrganismsProcessed();
+        long[] born = getBirths();
+        long[] died = getDeaths();
+        long[] bytes = getAllocatedBytes();
+        StringBuilder buffer = new StringBuilder();
+        buffer.append(String.format("%-8s %9s %9s %9s %9s %12s %10s %10s %14s%n",
+                                    "phase", "mean ms", "median", "p99", "max",
+                                    "processed", "births", "deaths", "bytes"));
+        for(int phase = 0; phase < phases.length; phase++) {
+            buffer.append(String.format("%-8s %9.3f %9.3f %9.3f %9.3f %12d %10d %10d %14d%n",
+                                        phases[phase], means[phase], medians[phase],
+                                        p99s[phase], maxima[phase], processed[phase],
+                                        born[phase], died[phase], bytes[phase]));
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Forget everything collected so far.
+     */
+    public synchronized void reset()
+    {
+        steps = 0;
+        Arrays.fill(samples, 0);
+        Arrays.fill(totalNanos, 0);
+        Arrays.fill(maxNanos, 0);
+        Arrays.fill(organisms, 0);
+        Arrays.fill(births, 0);
+        Arrays.fill(deaths, 0);
+        Arrays.fill(allocated, 0);
+    }
+
+    /**
+     * @return A quantile of the recent times of each phase.
+     */
+    private synchronized double[] recentQuantile(double quantile)
+    {
+        double[] quantiles = new double[phases.length];
+        for(int phase = 0; phase < phases.length; phase++) {
+            int count = (int) Math.min(samples[phase], WINDOW);
+            if(count > 0) {
+                long[] sorted = Arrays.copyOf(recent[phase], count);
+                Arrays.sort(sorted);
+                int index = (int) Math.min(count - 1, Math.floor(quantile * count));
+                quantiles[phase] = sorted[index] / NANOS_PER_MILLI;
+            }
+        }
+        return quantiles;
+    }
+
+    /**
+     * @return The bytes allocated so far by the current thread, or 0 if
+     *         they cannot be measured.
+     */
+    private static long allocatedBytes()
+    {
+        return threads == null ? 0
+               : threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * @return The bean that measures the bytes allocated by a thread, or
+     *         null if this JVM does not provide one that can.
+     */
+    private static com.sun.management.ThreadMXBean allocationBean()
+    {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if(bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean allocation = (com.sun.management.ThreadMXBean) bean;
+            if(allocation.isThreadAllocatedMemorySupported()
+               && allocation.isThreadAllocatedMemoryEnabled()) {
+                return allocation;
+            }
+        }
+        return null;
+    }
+}
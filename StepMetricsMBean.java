@@ -0,0 +1,97 @@
+/**
+ * The management interface of StepMetrics, through which the metrics of
+ * a running simulation can be watched with JMX tools such as JConsole or
+ * VisualVM. Every array attribute has one entry per phase, in the order
+ * of getPhases. Times are in milliseconds.
+ *
+ * @author David J. Barnes and Michael Kölling
+ * @version 2016.02.29
+ */
+public interface StepMetricsMBean
+{
+    /**
+     * @return Whether metrics are being collected.
+     */
+    boolean isEnabled();
+
+    /**
+     * Start or stop collecting metrics. What was collected is kept.
+     * @param enabled true to collect metrics.
+     */
+    void setEnabled(boolean enabled);
+
+    /**
+     * @return The names of the phases of a step.
+     */
+    String[] getPhases();
+
+    /**
+     * @return The number of steps measured.
+     */
+    long getSteps();
+
+    /**
+     * @return The number of times each phase was measured.
+     */
+    long[] getSamples();
+
+    /**
+     * @return The mean time of each phase.
+     */
+    double[] getMeanMillis();
+
+    /**
+     * @return The longest time of each phase.
+     */
+    double[] getMaxMillis();
+
+    /**
+     * @return The median time of each phase over its recent samples.
+     */
+    double[] getMedianMillis();
+
+    /**
+     * @return The 99th percentile time of each phase over its recent samples.
+     */
+    double[] getP99Millis();
+
+    /**
+     * @return The number of organisms or cells each phase has processed.
+     */
+    long[] getOrganismsProcessed();
+
+    /**
+     * @return The number of births during each phase.
+     */
+    long[] getBirths();
+
+    /**
+     * @return The number of deaths during each phase.
+     */
+    long[] getDeaths();
+
+    /**
+     * @return The bytes allocated by the simulating thread during each
+     *         phase, or -1 if the JVM cannot measure them.
+     */
+    long[] getAllocatedBytes();
+
+    /**
+     * Return a histogram of the recent times of a phase. Bucket 0 counts
+     * the times under 1 microsecond, and bucket b above 0 those from
+     * 2 to the power b - 1 up to 2 to the power b microseconds.
+     * @param phase The name of the phase.
+     * @return The count in each bucket.
+     */
+    long[] getLatencyHistogram(String phase);
+
+    /**
+     * @return A table of the metrics, one line per phase.
+     */
+    String getDetails();
+
+    /**
+     * Forget everything collected so far.
+     */
+    void reset();
+}
@@ -0,0 +1,144 @@
+
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The test class StepMetricsTest. The figures the metrics record for
+ * each phase are checked against those kept by FieldStats.
+ *
+ * @author David J. Barnes and Michael Kölling
+ * @version 2016.02.29
+ */
+public class StepMetricsTest
+{
+    // The size of the simulated field.
+    private static final int DEPTH = 80;
+    private static final int WIDTH = 80;
+    // The number of steps measured.
+    private static final int STEPS = 15;
+
+    private Simulator simulator;
+
+    /**
+     * Default constructor for test class StepMetricsTest
+     */
+    public StepMetricsTest()
+    {
+    }
+
+    /**
+     * Sets up the test fixture.
+     *
+     * Called before every test case method.
+     */
+    @BeforeEach
+    public void setUp()
+    {
+        simulator = new Simulator(DEPTH, WIDTH, true, 51);
+        simulator.setMetricsEnabled(true);
+    }
+
+    /**
+     * Tears down the test fixture.
+     *
+     * Called after every test case method.
+     */
+    @AfterEach
+    public void tearDown()
+    {
+        simulator.setMetricsEnabled(false);
+    }
+
+    @Test
+    public void testPhases()
+    {
+        StepMetrics metrics = simulator.getMetrics();
+        List<String> phases = Arrays.asList(metrics.getPhases());
+        assertEquals(List.of("Grass", "Deer", "Tree", "Fire", "Merge", "Status"), phases);
+        assertThrows(IllegalArgumentException.class, () -> metrics.getLatencyHistogram("Wolf"));
+    }
+
+    @Test
+    public void testFiguresMatchStats()
+    {
+        StepMetrics metrics = simulator.getMetrics();
+        List<String> phases = Arrays.asList(metrics.getPhases());
+        FieldStats stats = simulator.getStats();
+        long[] births = new long[Species.COUNT];
+        long[] processed = new long[Species.COUNT];
+        long totalBirths = 0;
+        long totalDeaths = 0;
+        for(int step = 1; step <= STEPS; step++) {
+            for(int code = 0; code < Species.COUNT; code++) {
+                processed[code] += stats.getCount(code);
+            }
+            simulator.simulateOneStep();
+            for(int code = 0; code < Species.COUNT; code++) {
+                births[code] += stats.getBirths(code);
+            }
+            totalBirths += stats.getTotalBirths();
+            totalDeaths += stats.getTotalDeaths();
+        }
+
+        assertEquals(STEPS, metrics.getSteps());
+        for(long samples : metrics.getSamples()) {
+            assertEquals(STEPS, samples);
+        }
+        long[] phaseBirths = metrics.getBirths();
+        long[] phaseDeaths = metrics.getDeaths();
+        long[] phaseProcessed = metrics.getOrganismsProcessed();
+        for(int code = 0; code < Species.COUNT; code++) {
+            if(simulator.getParameters().getSpecies(code) != null) {
+                // A species' young are born during its own turn.
+                int phase = phases.indexOf(Species.getName(code));
+                assertEquals(births[code], phaseBirths[phase], "Births of " + phases.get(phase));
+                assertEquals(processed[code], phaseProcessed[phase],
+                             "Organisms of " + phases.get(phase));
+            }
+        }
+        assertEquals(totalBirths, Arrays.stream(phaseBirths).sum());
+        assertEquals(totalDeaths, Arrays.stream(phaseDeaths).sum());
+        int merge = phases.indexOf("Merge");
+        int status = phases.indexOf("Status");
+        assertEquals(0, phaseBirths[merge] + phaseDeaths[merge]);
+        assertEquals(0, phaseBirths[status] + phaseDeaths[status]);
+        assertEquals(0, phaseProcessed[status]);
+        assertTrue(totalBirths > 0 && totalDeaths > 0, "Something happened");
+    }
+
+    @Test
+    public void testDisabledRecordsNothing()
+    {
+        StepMetrics metrics = simulator.getMetrics();
+        simulator.simulate(3);
+        String details = metrics.getDetails();
+        long[] samples = metrics.getSamples();
+
+        metrics.setEnabled(false);
+        assertFalse(metrics.isEnabled());
+        simulator.simulate(STEPS);
+        assertEquals(3, metrics.getSteps());
+        assertArrayEquals(samples, metrics.getSamples());
+        assertEquals(details, metrics.getDetails());
+
+        metrics.setEnabled(true);
+        simulator.simulateOneStep();
+        assertEquals(4, metrics.getSteps());
+    }
+
+    @Test
+    public void testStoppedMetricsAreForgotten()
+    {
+        simulator.simulate(2);
+        simulator.setMetricsEnabled(false);
+        assertNull(simulator.getMetrics());
+        simulator.simulate(2);
+        simulator.setMetricsEnabled(true);
+        assertEquals(0, simulator.getMetrics().getSteps());
+    }
+}
@@ -0,0 +1,306 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Run the steps of a simulation in parallel by splitting the field into
+ * square tiles and updating the tiles on a ForkJoinPool.
+ *
+ * An organism only looks at and moves into the locations next to it, so
+ * tiles at least MIN_TILE_SIZE wide never interfere if no two tiles that
+ * touch are updated at the same moment. The tiles are therefore colored
+ * like a checkerboard with a 2x2 pattern, and each species' phase of a step
+ * runs as four passes, one per color. Within a pass every tile runs on its
+ * own. Each organism draws its random numbers from a CounterRandom stream
+ * keyed by the simulation seed, the step, the phase and the location at
+ * which it starts to act, so what it draws does not depend on which thread
+ * runs it or on what else has run. The result of a step is thus the same
+ * for a given seed and tile size whatever the number of threads. It is not
+ * the same as the result of the sequential step, which visits organisms in
+ * another order and draws from the simulation's own generator.
+ *
+ * @author David J. Barnes and Michael Kölling
+ * @version 2016.02.29
+ */
+public class TiledStepEngine
+{
+    // The smallest tile size for which same-colored tiles cannot interfere.
+    public static final int MIN_TILE_SIZE = 3;
+    // The tile size used unless another is asked for.
+    public static final int DEFAULT_TILE_SIZE = 64;
+    // The number of tile colors in the checkerboard.
+    private static final int COLORS = 4;
+    // Below this many tiles, a task updates its tiles itself instead of splitting.
+    private static final int TILES_PER_TASK = 4;
+
+    // The field being updated.
+    private final Field field;
+    // The width and depth of each tile.
+    private final int tileSize;
+    // The number of tiles across and down the field.
+    private final int tilesAcross, tilesDown;
+    // The seed from which all the organisms' random streams are derived.
+    private final long seed;
+    // The threads that update the tiles.
+    private final ForkJoinPool pool;
+    // The tiles of each color, by tile number.
+    private final int[][] tilesOfColor;
+    // Each tile's newborns in the current phase.
+    private final List<List<Organism>> tileNewborns;
+    // The organisms of the current phase sorted by tile, and where each tile's start.
+    private Organism[] sorted;
+    private final int[] tileStart;
+    // The location index of each sorted organism, which keys its random stream.
+    private long[] sortedKeys;
+    // The number of the step and of the phase being run.
+    private int step, phase;
+
+    /**
+     * Create an engine for the given field.
+     * @param field The field to update.
+     * @param tileSize The width and depth of each tile; at least MIN_TILE_SIZE.
+     * @param threads The number of threads to use.
+     * @param seed The seed from which the organisms' random streams are derived.
+     */
+    public TiledStepEngine(Field field, int tileSize, int threads, long seed)
+    {
+        if(tileSize < MIN_TILE_SIZE) {
+            throw new IllegalArgumentException("Tile size must be at least " + MIN_TILE_SIZE);
+        }
+        this.field = field;
+        this.tileSize = tileSize;
+        this.seed = seed;
+        tilesAcross = (field.getWidth() + tileSize - 1) / tileSize;
+        tilesDown = (field.getDepth() + tileSize - 1) / tileSize;
+        int tiles = tilesAcross * tilesDown;
+        pool = new ForkJoinPool(threads);
+
+        int[] colorSizes = new int[COLORS];
+        for(int tile = 0; tile < tiles; tile++) {
+            colorSizes[colorOf(tile)]++;
+        }
+        tilesOfColor = new int[COLORS][];
+        for(int color = 0; color < COLORS; color++) {
+            tilesOfColor[color] = new int[colorSizes[color]];
+            colorSizes[color] = 0;
+        }
+        for(int tile = 0; tile < tiles; tile++) {
+            int color = colorOf(tile);
+            tilesOfColor[color][colorSizes[color]++] = tile;
+        }
+
+        tileNewborns = new ArrayList<>(tiles);
+        for(int tile = 0; tile < tiles; tile++) {
+            tileNewborns.add(new ArrayList<>());
+        }
+        tileStart = new int[tiles + 1];
+        sorted = new Organism[0];
+        sortedKeys = new long[0];
+    }
+
+    /**
+     * Run one step of the simulation: let each species act in turn, one
+     * phase per species, and add their newborns to the lists. A species
+     * simulated by a layer of the field is skipped, but keeps its phase
+     * number, and is left to the caller.
+     * @param step The number of the step being run.
+     * @param populations The organisms of each species, indexed by species
+     *                    code; null for codes with no species.
+     * @param metrics The metrics in which to record each phase, or null.
+     *                Each phase is also recorded as a flight recorder event.
+     */
+    public void step(int step, List<List<Organism>> populations, StepMetrics metrics)
+    {
+        int phase = 0;
+        for(int code = 0; code < populations.size(); code++) {
+            List<Organism> population = populations.get(code);
+            if(population != null) {
+                if(field.getLayer(code) == null) {
+                    int size = population.size();
+                    if(metrics != null) {
+                        metrics.startPhase(field.getStats());
+                    }
+                    SimulationEvents.PhaseEvent event =
+                        SimulationEvents.beginPhase(field.getStats());
+                    // The counts can only be read between phases.
+                    field.beginConcurrentUpdates();
+                    try {
+                        runPhase(step, phase, population);
+                    }
+                    finally {
+                        field.endConcurrentUpdates();
+                    }
+                    if(metrics != null) {
+                        metrics.endPhase(phase, size, field.getStats());
+                    }
+                    SimulationEvents.endPhase(event, step, Species.getName(code), size,
+                                              field.getStats());
+                }
+                phase++;
+            }
+        }
+    }
+
+    /**
+     * Stop the engine's threads.
+     */
+    public void shutdown()
+    {
+        pool.shutdown();
+    }
+
+    /**
+     * Let every organism of one species act, tile by tile, then replace
+     * the list with the survivors followed by the newborns, both in tile order.
+     * The dead are returned to the field's pool.
+     * @param step The number of the step being run.
+     * @param phase The number of this phase within the step.
+     * @param organisms The organisms of this species.
+     */
+    private void runPhase(int step, int phase, List<Organism> organisms)
+    {
+        this.step = step;
+        this.phase = phase;
+        sortByTile(organisms);
+
+        for(int color = 0; color < COLORS; color++) {
+            int[] tiles = tilesOfColor[color];
+            pool.invoke(new TileTask(tiles, 0, tiles.length));
+        }
+
+        organisms.clear();
+        for(int index = 0; index < tileStart[tileStart.length - 1]; index++) {
+            Organism organism = sorted[index];
+            if(organism.isAlive()) {
+                organisms.add(organism);
+            }
+            else {
+                field.getPool().release(organism);
+            }
+            sorted[index] = null;
+        }
+        for(List<Organism> newborns : tileNewborns) {
+            organisms.addAll(newborns);
+            newborns.clear();
+        }
+    }
+
+    /**
+     * Sort the living organisms by the tile they are in, keeping their
+     * relative order within each tile. Dead organisms are dropped and
+     * returned to the field's pool.
+     */
+    private void sortByTile(List<Organism> organisms)
+    {
+        int tiles = tileStart.length - 1;
+        int[] tileOf = new int[organisms.size()];
+        Arrays.fill(tileStart, 0);
+        for(int index = 0; index < organisms.size(); index++) {
+            Organism organism = organisms.get(index);
+            if(organism.isAlive()) {
+                Location location = organism.getLocation();
+                int tile = (location.getRow() / tileSize) * tilesAcross
+                           + location.getCol() / tileSize;
+                tileOf[index] = tile;
+                tileStart[tile + 1]++;
+            }
+            else {
+                tileOf[index] = -1;
+                field.getPool().release(organism);
+            }
+        }
+        for(int tile = 0; tile < tiles; tile++) {
+            tileStart[tile + 1] += tileStart[tile];
+        }
+        if(sorted.length < tileStart[tiles]) {
+            int capacity = Math.max(tileStart[tiles], sorted.length * 2);
+            sorted = new Organism[capacity];
+            sortedKeys = new long[capacity];
+        }
+        int[] next = tileStart.clone();
+        long width = field.getWidth();
+        for(int index = 0; index < organisms.size(); index++) {
+            if(tileOf[index] >= 0) {
+                Organism organism = organisms.get(index);
+                Location location = organism.getLocation();
+                int position = next[tileOf[index]]++;
+                sorted[position] = organism;
+                sortedKeys[position] = location.getRow() * width + location.getCol();
+            }
+        }
+    }
+
+    /**
+     * @return The checkerboard color of the given tile.
+     */
+    private int colorOf(int tile)
+    {
+        int tileRow = tile / tilesAcross;
+        int tileCol = tile % tilesAcross;
+        return (tileRow % 2) * 2 + (tileCol % 2);
+    }
+
+    /**
+     * A task that updates a range of the tiles of one color, splitting
+     * itself while the range is large.
+     */
+    private class TileTask extends RecursiveAction
+    {
+        // Tasks are never serialized, but RecursiveAction is Serializable.
+        private static final long serialVersionUID = 1L;
+
+        private final int[] tiles;
+        private final int from, to;
+
+        /**
+         * Create a task for tiles[from] to tiles[to - 1].
+         */
+        TileTask(int[] tiles, int from, int to)
+        {
+            this.tiles = tiles;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Update the tiles, or split the work in two.
+         */
+        protected void compute()
+        {
+            if(to - from <= TILES_PER_TASK) {
+                for(int index = from; index < to; index++) {
+                    updateTile(tiles[index]);
+                }
+            }
+            else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new TileTask(tiles, from, middle),
+                          new TileTask(tiles, middle, to));
+            }
+        }
+
+        /**
+         * Let the organisms in one tile act, each with its own random stream.
+         */
+        private void updateTile(int tile)
+        {
+            if(tileStart[tile] == tileStart[tile + 1]) {
+                return;
+            }
+            CounterRandom stream = Randomizer.getStream();
+            Randomizer.bind(stream);
+            try {
+                List<Organism> newborns = tileNewborns.get(tile);
+                for(int index = tileStart[tile]; index < tileStart[tile + 1]; index++) {
+                    stream.rekey(seed, step, phase, sortedKeys[index]);
+                    sorted[index].act(newborns);
+                }
+            }
+            finally {
+                Randomizer.unbind();
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The test class TiledStepEngineTest. A step run by the engine must give
+ * the same field whatever the number of threads running it.
+ *
+ * @author David J. Barnes and Michael Kölling
+ * @version 2016.02.29
+ */
+public class TiledStepEngineTest
+{
+    // The size of the field.
+    private static final int DEPTH = 150;
+    private static final int WIDTH = 130;
+    // The number of steps run.
+    private static final int STEPS = 20;
+    // The seed of the organisms' random streams.
+    private static final long SEED = 21;
+
+    /**
+     * Default constructor for test class TiledStepEngineTest
+     */
+    public TiledStepEngineTest()
+    {
+    }
+
+    /**
+     * Sets up the test fixture.
+     *
+     * Called before every test case method.
+     */
+    @BeforeEach
+    public void setUp()
+    {
+        Randomizer.bind(new RestorableRandom(SEED));
+    }
+
+    /**
+     * Tears down the test fixture.
+     *
+     * Called after every test case method.
+     */
+    @AfterEach
+    public void tearDown()
+    {
+        Randomizer.unbind();
+    }
+
+    @Test
+    public void testSameResultOnAnyNumberOfThreads()
+    {
+        byte[] expected = run(TiledStepEngine.DEFAULT_TILE_SIZE, 1);
+        for(int threads : new int[] {2, 4, 7}) {
+            assertArrayEquals(expected, run(TiledStepEngine.DEFAULT_TILE_SIZE, threads),
+                              "Field after " + STEPS + " steps on " + threads + " threads");
+        }
+    }
+
+    @Test
+    public void testSameResultWithSmallestTiles()
+    {
+        byte[] expected = run(TiledStepEngine.MIN_TILE_SIZE, 1);
+        assertArrayEquals(expected, run(TiledStepEngine.MIN_TILE_SIZE, 5));
+    }
+
+    @Test
+    public void testSimulatorSameResultOnAnyNumberOfThreads()
+    {
+        byte[] expected = null;
+        for(int threads : new int[] {2, 3, 8}) {
+            Simulator simulator = new Simulator(DEPTH, WIDTH, true, SEED);
+            simulator.setFireLayer(true);
+            simulator.setThreads(threads);
+            simulator.simulate(STEPS);
+            simulator.setThreads(1);
+            byte[] codes = new byte[DEPTH * WIDTH];
+            simulator.getField().copyCodes(ByteBuffer.wrap(codes));
+            if(expected == null) {
+                expected = codes;
+            }
+            assertArrayEquals(expected, codes, "Field on " + threads + " threads");
+        }
+    }
+
+    @Test
+    public void testTileSizeTooSmall()
+    {
+        Field field = new Field(DEPTH, WIDTH);
+        int tileSize = TiledStepEngine.MIN_TILE_SIZE - 1;
+        assertThrows(IllegalArgumentException.class,
+                     () -> new TiledStepEngine(field, tileSize, 2, SEED));
+    }
+
+    /**
+     * Populate a field from the fixed seed and run steps of it on the engine.
+     * @param tileSize The size of the engine's tiles.
+     * @param threads The number of threads to use.
+     * @return The species code of every location after the steps.
+     */
+    private byte[] run(int tileSize, int threads)
+    {
+        Randomizer.bind(new RestorableRandom(SEED));
+        Field field = new Field(DEPTH, WIDTH);
+        List<List<Organism>> populations = populate(field);
+        TiledStepEngine engine = new TiledStepEngine(field, tileSize, threads, SEED);
+        try {
+            for(int step = 1; step <= STEPS; step++) {
+                engine.step(step, populations, null);
+            }
+        }
+        finally {
+            engine.shutdown();
+        }
+        byte[] codes = new byte[DEPTH * WIDTH];
+        field.copyCodes(ByteBuffer.wrap(codes));
+        return codes;
+    }
+
+    /**
+     * Fill a field with organisms as a simulation does.
+     * @return The organisms of each species, indexed by species code.
+     */
+    private List<List<Organism>> populate(Field field)
+    {
+        Parameters parameters = Parameters.defaults();
+        List<List<Organism>> populations = new ArrayList<>();
+        for(int code = 0; code < Species.COUNT; code++) {
+            populations.add(parameters.getSpecies(code) == null ? null : new ArrayList<>());
+        }
+        Random rand = Randomizer.getRandom();
+        for(int row = 0; row < field.getDepth(); row++) {
+            for(int col = 0; col < field.getWidth(); col++) {
+                for(int code = 0; code < Species.COUNT; code++) {
+                    Species species = parameters.getSpecies(code);
+                    if(species != null
+                       && rand.nextDouble() <= parameters.getCreationProbability(code)) {
+                        Location location = new Location(row, col);
+                        populations.get(code).add(field.getPool().acquire(species, true,
+                                                                          field, location));
+                        break;
+                    }
+                }
+            }
+        }
+        return populations;
+    }
+}
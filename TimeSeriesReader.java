@@ -0,0 +1,224 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads the per-step figures recorded by a TimeSeriesWriter. The block
+ * index is loaded when the reader is opened; a range of steps is then
+ * read by finding its first block in the index and reading only the
+ * blocks that overlap the range.
+ *
+ * @author David J. Barnes and Michael Kölling
+ * @version 2016.02.29
+ */
+public class TimeSeriesReader implements AutoCloseable
+{
+    // The data file.
+    private final FileChannel data;
+    // The first and last step and the file offset of each block.
+    private final int[] firstSteps, lastSteps;
+    private final long[] offsets;
+
+    /**
+     * Open a time series and load its index.
+     * @param file The data file written by a TimeSeriesWriter.
+     * @throws IOException If the files cannot be read or are not a time series.
+     */
+    public TimeSeriesReader(Path file) throws IOException
+    {
+        data = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = readAt(0, TimeSeriesWriter.HEADER_SIZE);
+            if(header.getInt() != TimeSeriesWriter.MAGIC) {
+                throw new IOException("Not a time series file");
+            }
+            int version = header.getInt();
+            if(version != TimeSeriesWriter.VERSION) {
+                throw new IOException("Unsupported time series version " + version);
+            }
+            int codes = header.getInt();
+            if(codes != Species.COUNT) {
+                throw new IOException("Time series has " + codes + " species codes, not "
+                                      + Species.COUNT);
+            }
+
+            byte[] entries = Files.readAllBytes(TimeSeriesWriter.indexFile(file));
+            ByteBuffer index = ByteBuffer.wrap(entries);
+            int blocks = entries.length / TimeSeriesWriter.INDEX_ENTRY_SIZE;
+            firstSteps = new int[blocks];
+            lastSteps = new int[blocks];
+            offsets = new long[blocks];
+            for(int block = 0; block < blocks; block++) {
+                firstSteps[block] = index.getInt();
+                lastSteps[block] = index.getInt();
+                offsets[block] = index.getLong();
+            }
+        }
+        catch(IOException e) {
+            data.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The first step recorded, or -1 if there are none.
+     */
+    public int getFirstStep()
+    {
+        return firstSteps.length == 0 ? -1 : firstSteps[0];
+    }
+
+    /**
+     * @return The last step recorded, or -1 if there are none.
+     */
+    public int getLastStep()
+    {
+        return lastSteps.length == 0 ? -1 : lastSteps[lastSteps.length - 1];
+    }
+
+    /**
+     * Read the figures of every recorded step in a range.
+     * @param from The first step wanted.
+     * @param to The last step wanted.
+     * @return The figures of the recorded steps from 'from' to 'to' inclusive.
+     * @throws IOException If the data cannot be read.
+     */
+    public Series read(int from, int to) throws IOException
+    {
+        // Find the first block that ends at or after 'from'.
+        int low = 0;
+        int high = lastSteps.length;
+        while(low < high) {
+            int middle = (low + high) >>> 1;
+            if(lastSteps[middle] < from) {
+                low = middle + 1;
+            }
+            else {
+                high = middle;
+            }
+        }
+
+        Series series = new Series();
+        for(int block = low; block < firstSteps.length && firstSteps[block] <= to; block++) {
+            ByteBuffer count = readAt(offsets[block], Integer.BYTES);
+            int rows = count.getInt();
+            int[][] columns = new int[TimeSeriesWriter.COLUMNS][rows];
+            ByteBuffer values = readAt(offsets[block] + Integer.BYTES,
+                                       Integer.BYTES * TimeSeriesWriter.COLUMNS * rows);
+            for(int[] column : columns) {
+                values.asIntBuffer().get(column);
+                values.position(values.position() + Integer.BYTES * rows);
+            }
+            for(int row = 0; row < rows; row++) {
+                int step = columns[0][row];
+                if(step >= from && step <= to) {
+                    series.add(columns, row);
+                }
+            }
+        }
+        return series;
+    }
+
+    /**
+     * Close the data file.
+     * @throws IOException If it cannot be closed.
+     */
+    public void close() throws IOException
+    {
+        data.close();
+    }
+
+    /**
+     * Read a number of bytes from the data file at the given offset.
+     */
+    private ByteBuffer readAt(long offset, int length) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while(buffer.hasRemaining()) {
+            if(data.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Time series ends early at offset " + offset);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * The figures of a range of steps, one row per step.
+     */
+    public static class Series
+    {
+        // The values of each column, growing as rows are added.
+        private int[][] columns;
+        // The number of rows.
+        private int size;
+
+        /**
+         * Create an empty series.
+         */
+        Series()
+        {
+            columns = new int[TimeSeriesWriter.COLUMNS][16];
+        }
+
+        /**
+         * @return The number of steps in the series.
+         */
+        public int size()
+        {
+            return size;
+        }
+
+        /**
+         * @return The step number of the given row.
+         */
+        public int getStep(int row)
+        {
+            return columns[0][row];
+        }
+
+        /**
+         * @return The number of organisms of a species at the given row's step.
+         */
+        public int getCount(int row, int speciesCode)
+        {
+            return columns[1 + 3 * speciesCode][row];
+        }
+
+        /**
+         * @return The births of a species during the given row's step.
+         */
+        public int getBirths(int row, int speciesCode)
+        {
+            return columns[2 + 3 * speciesCode][row];
+        }
+
+        /**
+         * @return The deaths of a species during the given row's step.
+         */
+        public int getDeaths(int row, int speciesCode)
+        {
+            return columns[3 + 3 * speciesCode][row];
+        }
+
+        /**
+         * Add a row taken from a block's columns.
+         */
+        void add(int[][] blockColumns, int row)
+        {
+            if(size == columns[0].length) {
+                for(int column = 0; column < columns.length; column++) {
+                    columns[column] = Arrays.copyOf(columns[column], size * 2);
+                }
+            }
+            for(int column = 0; column < columns.length; column++) {
+                columns[column][size] = blockColumns[column][row];
+            }
+            size++;
+        }
+    }
+}
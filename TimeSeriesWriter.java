@@ -0,0 +1,264 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * An observer that records the count, births and deaths of every species
+ * at every step in a compact binary file, for analysis after the run.
+ *
+ * The simulation thread only copies the figures of a step and queues
+ * them; a background thread does the writing. Rows are gathered into
+ * blocks of BLOCK_ROWS steps and each block is stored column by column:
+ * first the step numbers, then for each species code its counts, births
+ * and deaths. A separate index file, with the name of the data file
+ * followed by INDEX_SUFFIX, gives the first and last step and the file
+ * offset of every block, so that TimeSeriesReader can read any range of
+ * steps without scanning the data.
+ *
+ * The index relies on the steps of a file increasing, so a step that is
+ * not later than the last one recorded, as after Simulator.reset, is
+ * ignored. Use a new writer for each run.
+ *
+ * @author David J. Barnes and Michael Kölling
+ * @version 2016.02.29
+ */
+public class TimeSeriesWriter implements SimulatorObserver
+{
+    // Identifies a time-series data file ("ECTS").
+    static final int MAGIC = 0x45435453;
+    // The version of the file format.
+    static final int VERSION = 1;
+    // The size of the data file's header: magic, version, codes, block rows.
+    static final int HEADER_SIZE = 4 * Integer.BYTES;
+    // The size of one index entry: first step, last step, offset.
+    static final int INDEX_ENTRY_SIZE = 2 * Integer.BYTES + Long.BYTES;
+    // Appended to the data file's name to give the index file's.
+    static final String INDEX_SUFFIX = ".idx";
+    // The number of values recorded per step: the step, then the count,
+    // births and deaths of each species code.
+    static final int COLUMNS = 1 + 3 * Species.COUNT;
+    // The most steps held in one block.
+    public static final int BLOCK_ROWS = 1024;
+    // How many steps may wait for the writer thread before the simulation
+    // is made to wait for it.
+    private static final int QUEUE_CAPACITY = 8 * BLOCK_ROWS;
+    // Queued to tell the writer thread to finish.
+    private static final int[] END = new int[0];
+
+    // Steps waiting to be written.
+    private final BlockingQueue<int[]> queue;
+    // The thread that writes them.
+    private final Thread writer;
+    // The data and index files.
+    private final FileChannel data, index;
+    // The current block, one array per column.
+    private final int[][] block;
+    // The number of rows in the current block.
+    private int rows;
+    // The last step queued.
+    private int lastStep;
+    // Any failure of the writer thread, reported by close.
+    private volatile IOException failure;
+    // Whether close has been called.
+    private boolean closed;
+
+    /**
+     * Create a writer for a new time series, replacing any existing files.
+     * @param file The data file; the index is written beside it.
+     * @throws IOException If the files cannot be created.
+     */
+    public TimeSeriesWriter(Path file) throws IOException
+    {
+        data = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                StandardOpenOption.TRUNCATE_EXISTING);
+        index = FileChannel.open(indexFile(file), StandardOpenOption.CREATE,
+                                 StandardOpenOption.WRITE,
+                                 StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(Species.COUNT).putInt(BLOCK_ROWS);
+        header.flip();
+        writeFully(data, header);
+
+        block = new int[COLUMNS][BLOCK_ROWS];
+        lastStep = -1;
+        queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        writer = new Thread(this::drain, "time-series-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queue the figures of a step for writing.
+     * @param step The step just run.
+     * @param field The field being simulated.
+     * @param stats Statistics on the population of the field.
+     */
+    public void showStatus(int step, Field field, FieldStats stats)
+    {
+        if(closed || step <= lastStep) {
+            return;
+        }
+        lastStep = step;
+        int[] row = new int[COLUMNS];
+        row[0] = step;
+        for(int code = 0; code < Species.COUNT; code++) {
+            row[1 + 3 * code] = stats.getCount(code);
+            row[2 + 3 * code] = stats.getBirths(code);
+            row[3 + 3 * code] = stats.getDeaths(code);
+        }
+        enqueue(row);
+    }
+
+    /**
+     * Write everything queued and close the files. The writer should
+     * first be removed from the simulation's observers.
+     * @throws IOException If writing failed at any point.
+     */
+    public void close() throws IOException
+    {
+        if(closed) {
+            return;
+        }
+        closed = true;
+        enqueue(END);
+        try {
+            writer.join();
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing time series", e);
+        }
+        if(failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * @return The index file belonging to the given data file.
+     */
+    static Path indexFile(Path file)
+    {
+        return file.resolveSibling(file.getFileName() + INDEX_SUFFIX);
+    }
+
+    /**
+     * Queue a row, waiting if the writer thread has fallen far behind.
+     */
+    private void enqueue(int[] row)
+    {
+        try {
+            queue.put(row);
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The body of the writer thread: gather queued rows into blocks and
+     * write each block as it fills, until told to finish. After a failure
+     * rows are still taken, and dropped, so that the simulation is never
+     * kept waiting.
+     */
+    private void drain()
+    {
+        int[] row = take();
+        while(row != END) {
+            if(failure == null) {
+                try {
+                    append(row);
+                }
+                catch(IOException e) {
+                    failure = e;
+                }
+            }
+            row = take();
+        }
+        try {
+            if(failure == null) {
+                writeBlock();
+            }
+            data.close();
+            index.close();
+        }
+        catch(IOException e) {
+            if(failure == null) {
+                failure = e;
+            }
+        }
+    }
+
+    /**
+     * Take the next queued row, waiting for one if necessary. An interrupt
+     * is recorded as a failure, but the thread goes on taking rows until
+     * END, so that neither enqueue nor close can be left waiting on a
+     * full queue.
+     * @return The row.
+     */
+    private int[] take()
+    {
+        while(true) {
+            try {
+                return queue.take();
+            }
+            catch(InterruptedException e) {
+                if(failure == null) {
+                    failure = new IOException("Time series writer interrupted", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Add a row to the current block, writing the block once it is full.
+     */
+    private void append(int[] row) throws IOException
+    {
+        for(int column = 0; column < COLUMNS; column++) {
+            block[column][rows] = row[column];
+        }
+        rows++;
+        if(rows == BLOCK_ROWS) {
+            writeBlock();
+        }
+    }
+
+    /**
+     * Write the current block, if it has any rows, and its index entry.
+     */
+    private void writeBlock() throws IOException
+    {
+        if(rows == 0) {
+            return;
+        }
+        long offset = data.position();
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES * (1 + COLUMNS * rows));
+        buffer.putInt(rows);
+        for(int column = 0; column < COLUMNS; column++) {
+            buffer.asIntBuffer().put(block[column], 0, rows);
+            buffer.position(buffer.position() + Integer.BYTES * rows);
+        }
+        buffer.flip();
+        writeFully(data, buffer);
+
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+        entry.putInt(block[0][0]).putInt(block[0][rows - 1]).putLong(offset);
+        entry.flip();
+        writeFully(index, entry);
+        rows = 0;
+    }
+
+    /**
+     * Write the whole of a buffer to a channel.
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException
+    {
+        while(buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The test class TimeSeriesWriterTest. What a TimeSeriesWriter records
+ * must be read back unchanged by a TimeSeriesReader, through the index.
+ *
+ * @author David J. Barnes and Michael Kölling
+ * @version 2016.02.29
+ */
+public class TimeSeriesWriterTest
+{
+    // The number of steps written: two full blocks and a partial one.
+    private static final int STEPS = 2 * TimeSeriesWriter.BLOCK_ROWS + 100;
+
+    private Path file;
+    private FieldStats stats;
+
+    /**
+     * Default constructor for test class TimeSeriesWriterTest
+     */
+    public TimeSeriesWriterTest()
+    {
+    }
+
+    /**
+     * Sets up the test fixture.
+     *
+     * Called before every test case method.
+     */
+    @BeforeEach
+    public void setUp() throws IOException
+    {
+        file = Files.createTempFile("series", ".ects");
+        stats = new FieldStats();
+    }
+
+    /**
+     * Tears down the test fixture.
+     *
+     * Called after every test case method.
+     */
+    @AfterEach
+    public void tearDown() throws IOException
+    {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(TimeSeriesWriter.indexFile(file));
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException
+    {
+        TimeSeriesWriter writer = new TimeSeriesWriter(file);
+        for(int step = 1; step <= STEPS; step++) {
+            record(writer, step);
+        }
+        writer.close();
+
+        assertEquals(3 * TimeSeriesWriter.INDEX_ENTRY_SIZE,
+                     Files.size(TimeSeriesWriter.indexFile(file)));
+        try(TimeSeriesReader reader = new TimeSeriesReader(file)) {
+            assertEquals(1, reader.getFirstStep());
+            assertEquals(STEPS, reader.getLastStep());
+            assertSteps(reader.read(1, STEPS), 1, STEPS);
+            // Ranges across the edges of blocks, and within the last one.
+            int edge = TimeSeriesWriter.BLOCK_ROWS;
+            assertSteps(reader.read(edge - 5, edge + 5), edge - 5, edge + 5);
+            assertSteps(reader.read(2 * edge + 1, STEPS), 2 * edge + 1, STEPS);
+            assertSteps(reader.read(STEPS - 3, STEPS + 50), STEPS - 3, STEPS);
+            assertEquals(0, reader.read(STEPS + 1, STEPS + 10).size());
+        }
+    }
+
+    @Test
+    public void testEarlierStepsIgnored() throws IOException
+    {
+        TimeSeriesWriter writer = new TimeSeriesWriter(file);
+        for(int step = 1; step <= 10; step++) {
+            record(writer, step);
+        }
+        record(writer, 5);
+        record(writer, 10);
+        record(writer, 11);
+        writer.close();
+
+        try(TimeSeriesReader reader = new TimeSeriesReader(file)) {
+            assertSteps(reader.read(0, 100), 1, 11);
+        }
+    }
+
+    @Test
+    public void testEmptySeries() throws IOException
+    {
+        new TimeSeriesWriter(file).close();
+        assertEquals(0, Files.size(TimeSeriesWriter.indexFile(file)));
+        try(TimeSeriesReader reader = new TimeSeriesReader(file)) {
+            assertEquals(-1, reader.getFirstStep());
+            assertEquals(-1, reader.getLastStep());
+            assertEquals(0, reader.read(0, 10).size());
+        }
+    }
+
+    @Test
+    public void testInterruptedWriterKeepsDraining() throws IOException
+    {
+        TimeSeriesWriter writer = new TimeSeriesWriter(file);
+        for(Thread thread : Thread.getAllStackTraces().keySet()) {
+            if(thread.getName().equals("time-series-writer")) {
+                thread.interrupt();
+            }
+        }
+        // Many more steps than the queue holds: none of them may block.
+        for(int step = 1; step <= 10 * STEPS; step++) {
+            record(writer, step);
+        }
+        assertThrows(IOException.class, () -> writer.close());
+    }
+
+    /**
+     * Set the statistics to figures derived from a step and record them.
+     */
+    private void record(TimeSeriesWriter writer, int step)
+    {
+        stats.reset();
+        for(int n = 0; n < step % 50; n++) {
+            stats.incrementCount(Species.DEER);
+        }
+        for(int n = 0; n < step % 7; n++) {
+            stats.recordBirth(Species.GRASS);
+        }
+        for(int n = 0; n < step % 5; n++) {
+            stats.recordDeath(Species.TREE);
+        }
+        writer.showStatus(step, null, stats);
+    }
+
+    /**
+     * Check that a series holds exactly the given steps, each with the
+     * figures recorded for it.
+     */
+    private void assertSteps(TimeSeriesReader.Series series, int from, int to)
+    {
+        assertEquals(to - from + 1, series.size());
+        for(int row = 0; row < series.size(); row++) {
+            int step = from + row;
+            assertEquals(step, series.getStep(row));
+            assertEquals(step % 50, series.getCount(row, Species.DEER), "Count at " + step);
+            assertEquals(step % 7, series.getBirths(row, Species.GRASS), "Births at " + step);
+            assertEquals(step % 5, series.getDeaths(row, Species.TREE), "Deaths at " + step);
+            assertEquals(0, series.getDeaths(row, Species.DEER));
+        }
+    }
+}
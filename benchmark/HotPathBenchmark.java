@@ -0,0 +1,281 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Micro-benchmarks for the hot paths of the simulation: the neighbour
+ * queries of Field, one phase of each kind of organism, and a whole
+ * simulation step. Each benchmark is run for a range of field sizes and
+ * population densities, and reports the time and the number of bytes
+ * allocated per operation, so that every performance change can be
+ * judged against the same numbers.
+ *
+ * The benchmarks live in their own directory. Compile the project first
+ * (for example in BlueJ), then, from the project directory:
+ *
+ *     javac -encoding UTF-8 -cp . -d benchmark benchmark/*.java
+ *     java -cp .:benchmark HotPathBenchmark [sizes [densities [iterations]]]
+ *
+ * Sizes and densities are comma-separated lists, for example
+ * "12,256,4096" and "0.05,0.3". Allocation is measured per thread with
+ * com.sun.management.ThreadMXBean, which HotSpot JVMs provide.
+ *
+ * @author David J. Barnes and Michael Kölling
+ * @version 2016.02.29
+ */
+public class HotPathBenchmark
+{
+    // Default field sizes (width and depth) and densities.
+    private static final String DEFAULT_SIZES = "12,256,1024,4096";
+    private static final String DEFAULT_DENSITIES = "0.05,0.3";
+    // How many measured iterations each benchmark has by default.
+    private static final int DEFAULT_ITERATIONS = 5;
+    // How many iterations are run and thrown away first.
+    private static final int WARMUP_ITERATIONS = 3;
+    // How many neighbour queries a single field iteration makes.
+    private static final int QUERIES = 200000;
+    // The largest field for which a whole simulation step is measured.
+    private static final int MAX_STEP_SIZE = 1024;
+
+    // Used to measure the bytes allocated by this thread.
+    private static final com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    // Generates the benchmark fields; independent of the simulation's generator.
+    private static final Random setup = new Random(42);
+    // Keeps results alive so the JIT cannot remove the work that made them.
+    private static long sink;
+
+    /**
+     * One benchmark iteration.
+     */
+    private interface Operation
+    {
+        /**
+         * Run the operation some number of times.
+         * @return How many operations were run.
+         */
+        long run();
+    }
+
+    /**
+     * Run every benchmark and print a table of results.
+     * @param args Optional sizes, densities and number of iterations.
+     */
+    public static void main(String[] args)
+    {
+        int[] sizes = parseSizes(args.length > 0 ? args[0] : DEFAULT_SIZES);
+        double[] densities = parseDensities(args.length > 1 ? args[1] : DEFAULT_DENSITIES);
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_ITERATIONS;
+
+        System.out.printf("%-26s %6s %8s %14s %14s %12s%n",
+                          "benchmark", "size", "density", "ns/op", "ops/s", "bytes/op");
+        for(int size : sizes) {
+            for(double density : densities) {
+                benchmarkField(size, density, iterations);
+                benchmarkOrganisms(size, density, iterations);
+            }
+            if(size <= MAX_STEP_SIZE) {
+                benchmarkStep(size, iterations);
+            }
+        }
+        if(sink == 42) {
+            System.out.println();
+        }
+    }
+
+    /**
+     * Benchmark the neighbour queries on a field filled with grass.
+     */
+    private static void benchmarkField(int size, double density, int iterations)
+    {
+        Field field = new Field(size, size);
+        fill(field, density, Species.GRASS);
+        Location[] targets = new Location[QUERIES];
+        for(int i = 0; i < targets.length; i++) {
+            targets[i] = new Location(setup.nextInt(size), setup.nextInt(size));
+        }
+
+        measure("adjacentLocations", size, density, iterations, () -> {
+            for(Location target : targets) {
+                sink += field.adjacentLocations(target).size();
+            }
+            return targets.length;
+        });
+        measure("adjacentCells", size, density, iterations, () -> {
+            for(Location target : targets) {
+                sink += field.adjacentCells(target).size();
+            }
+            return targets.length;
+        });
+        measure("getFreeAdjacentLocations", size, density, iterations, () -> {
+            for(Location target : targets) {
+                sink += field.getFreeAdjacentLocations(target).size();
+            }
+            return targets.length;
+        });
+        measure("freeAdjacentLocation", size, density, iterations, () -> {
+            for(Location target : targets) {
+                if(field.freeAdjacentLocation(target) != null) {
+                    sink++;
+                }
+            }
+            return targets.length;
+        });
+    }
+
+    /**
+     * Benchmark one phase of each kind of organism. Each iteration builds
+     * a fresh field, so the measured phases all start from the same kind
+     * of state; only the phase itself is timed.
+     */
+    private static void benchmarkOrganisms(int size, double density, int iterations)
+    {
+        measurePhase("Grass.act", size, density, iterations, Species.GRASS, Species.EMPTY);
+        measurePhase("Deer.act", size, density, iterations, Species.DEER, Species.GRASS);
+        measurePhase("Fire.act", size, density, iterations, Species.FIRE, Species.TREE);
+    }
+
+    /**
+     * Benchmark whole headless simulation steps.
+     */
+    private static void benchmarkStep(int size, int iterations)
+    {
+        Simulator simulator = new Simulator(size, size, true);
+        measure("Simulator.simulateOneStep", size, Double.NaN, iterations, () -> {
+            if(!simulator.isViable()) {
+                simulator.reset();
+            }
+            simulator.simulateOneStep();
+            return 1;
+        });
+    }
+
+    /**
+     * Measure one phase of the given species on fields that also hold
+     * another species, such as its food, at the same density.
+     */
+    private static void measurePhase(String name, int size, double density, int iterations,
+                                     byte actor, byte other)
+    {
+        for(int i = -WARMUP_ITERATIONS; i < iterations; i++) {
+            Field field = new Field(size, size);
+            List<Organism> actors = fill(field, density, actor);
+            if(other != Species.EMPTY) {
+                fill(field, density, other);
+            }
+            Result result = time(() -> {
+                List<Organism> newborns = new ArrayList<>();
+                for(Organism organism : actors) {
+                    organism.act(newborns);
+                }
+                sink += newborns.size();
+                return actors.size();
+            });
+            if(i >= 0) {
+                result.print(name, size, density);
+            }
+        }
+    }
+
+    /**
+     * Run an operation for the warm-up and measured iterations and print
+     * one line for each measured iteration.
+     */
+    private static void measure(String name, int size, double density, int iterations,
+                                Operation operation)
+    {
+        for(int i = 0; i < WARMUP_ITERATIONS; i++) {
+            operation.run();
+        }
+        for(int i = 0; i < iterations; i++) {
+            time(operation).print(name, size, density);
+        }
+    }
+
+    /**
+     * Run an operation once, measuring time and allocation.
+     */
+    private static Result time(Operation operation)
+    {
+        long threadId = Thread.currentThread().getId();
+        long bytesBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        long ops = operation.run();
+        long elapsed = System.nanoTime() - start;
+        long bytes = threads.getThreadAllocatedBytes(threadId) - bytesBefore;
+        return new Result(Math.max(ops, 1), elapsed, bytes);
+    }
+
+    /**
+     * Place organisms of the given species in empty locations of the
+     * field, each location being chosen with the given probability.
+     * @return The organisms placed.
+     */
+    private static List<Organism> fill(Field field, double density, byte species)
+    {
+        List<Organism> placed = new ArrayList<>();
+        for(int row = 0; row < field.getDepth(); row++) {
+            for(int col = 0; col < field.getWidth(); col++) {
+                if(field.getSpeciesAt(row, col) == Species.EMPTY
+                   && setup.nextDouble() < density) {
+                    placed.add(Species.get(species).create(true, field,
+                                                           new Location(row, col)));
+                }
+            }
+        }
+        return placed;
+    }
+
+    /**
+     * Parse a comma-separated list of sizes.
+     */
+    private static int[] parseSizes(String list)
+    {
+        String[] parts = list.split(",");
+        int[] sizes = new int[parts.length];
+        for(int i = 0; i < parts.length; i++) {
+            sizes[i] = Integer.parseInt(parts[i].trim());
+        }
+        return sizes;
+    }
+
+    /**
+     * Parse a comma-separated list of densities.
+     */
+    private static double[] parseDensities(String list)
+    {
+        String[] parts = list.split(",");
+        double[] densities = new double[parts.length];
+        for(int i = 0; i < parts.length; i++) {
+            densities[i] = Double.parseDouble(parts[i].trim());
+        }
+        return densities;
+    }
+
+    /**
+     * The time and allocation of one benchmark iteration.
+     */
+    private static class Result
+    {
+        private final long ops, nanos, bytes;
+
+        Result(long ops, long nanos, long bytes)
+        {
+            this.ops = ops;
+            this.nanos = nanos;
+            this.bytes = bytes;
+        }
+
+        /**
+         * Print one line of the results table.
+         */
+        void print(String name, int size, double density)
+        {
+            double nanosPerOp = (double) nanos / ops;
+            System.out.printf("%-26s %6d %8s %14.1f %14.0f %12.1f%n",
+                              name, size, Double.isNaN(density) ? "-" : String.valueOf(density),
+                              nanosPerOp, 1e9 / nanosPerOp, (double) bytes / ops);
+        }
+    }
+}